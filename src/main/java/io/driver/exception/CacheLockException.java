@@ -0,0 +1,10 @@
+package io.driver.exception;
+
+public class CacheLockException extends AutoDriverException {
+    public CacheLockException() {
+    }
+
+    public CacheLockException(String message) {
+        super(message);
+    }
+}
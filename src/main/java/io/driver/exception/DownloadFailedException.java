@@ -0,0 +1,10 @@
+package io.driver.exception;
+
+public class DownloadFailedException extends AutoDriverException {
+    public DownloadFailedException() {
+    }
+
+    public DownloadFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package io.driver.exception;
+
+public class IntegrityCheckFailedException extends AutoDriverException {
+    public IntegrityCheckFailedException() {
+    }
+
+    public IntegrityCheckFailedException(String message) {
+        super(message);
+    }
+}
@@ -2,13 +2,26 @@ package io.driver.manage;
 
 import com.google.common.collect.Lists;
 import com.google.gson.reflect.TypeToken;
+import io.driver.exception.DownloadFailedException;
 import io.driver.exception.FileNotFoundException;
+import io.driver.exception.NotFoundDriverAddressException;
 import io.driver.exception.UnableToCreateDirectoryException;
+import io.driver.manage.enums.Arch;
 import io.driver.manage.enums.DriverType;
 import io.driver.manage.enums.Platform;
+import io.driver.utils.CacheLock;
+import io.driver.utils.CacheManager;
 import io.driver.utils.Config;
+import io.driver.utils.Downloader;
+import io.driver.utils.DriverStore;
 import io.driver.utils.Helper;
-import io.github.jiawade.tool.utils.GsonUtils;
+import io.driver.utils.Integrity;
+import io.driver.utils.Metrics;
+import io.driver.utils.MirrorSelector;
+import io.driver.utils.ProcessExecutor;
+import io.driver.utils.StreamingExtractor;
+import io.driver.utils.Version;
+import io.driver.utils.VersionRangeIndex;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
@@ -16,8 +29,9 @@ import org.apache.commons.io.FilenameUtils;
 
 import java.io.*;
 import java.lang.reflect.Type;
-import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -25,8 +39,13 @@ import java.util.stream.Collectors;
 @Slf4j
 @Getter
 public abstract class AbstractDriverProperties {
-    protected int arch;
+    private static volatile Platform detectedPlatform;
+    private static volatile Arch detectedArch;
+    protected final long configGeneration = Config.getGeneration();
+    protected Arch arch;
     protected Platform currentPlatform;
+    protected File cacheRoot;
+    protected File indexRoot;
     protected String chromeBaseUrl;
     protected String chromeDownloadUrl;
     protected String chromeMirrorUrl;
@@ -38,24 +57,26 @@ public abstract class AbstractDriverProperties {
     protected String firefoxMirrorDownloadPattern;
     protected String edgeBaseUrl;
     protected String edgeDownloadUrl;
+    protected List<String> chromeListings;
+    protected List<String> chromeDownloadPatterns;
+    protected List<String> firefoxDownloadPatterns;
+    protected List<String> edgeDownloadPatterns;
     protected Map<String, List<Integer>> localFireFoxDriverMapping;
     protected Map<DriverType, Map<Platform, List<String>>> driverPlatformCommands = new EnumMap<>(DriverType.class);
+    protected Map<DriverType, Map<Platform, List<String>>> driverPlatformProbes = new EnumMap<>(DriverType.class);
+    protected Map<DriverType, Map<Platform, List<String>>> driverPlatformExecutables = new EnumMap<>(DriverType.class);
+    protected final Map<DriverType, VersionProbe.Result> lastProbes = new ConcurrentHashMap<>();
     protected static final String browserVersionPattern = "[\\d+.\\d+]+";
+    protected static final Pattern browserVersionRegex = Pattern.compile(browserVersionPattern);
+    protected static final VersionRangeIndex bundledGeckoDriverMapping = loadBundledGeckoDriverMapping();
+    protected static final Type versionListType = new TypeToken<List<String>>() {
+    }.getType();
+    protected static final Type versionMappingType = new TypeToken<Map<String, List<Integer>>>() {
+    }.getType();
 
     protected AbstractDriverProperties() {
-        String osName = System.getProperty("os.name").toLowerCase();
-        if (osName.contains("windows")) {
-            currentPlatform = Platform.Windows;
-        } else if (osName.contains("linux")) {
-            currentPlatform = Platform.Linux;
-        } else if (osName.contains("mac")) {
-            currentPlatform = Platform.Mac;
-        } else {
-            throw new IllegalArgumentException("not supported os type:" + osName);
-        }
-        Properties properties = System.getProperties();
-        String propertiesValue = properties.getProperty("os.arch");
-        arch = (propertiesValue.equals("x86") ? 32 : 64);
+        currentPlatform = detectPlatform();
+        arch = detectArch();
         chromeBaseUrl = Config.getString("chrome.google");
         chromeDownloadUrl = Config.getString("chrome.googleDownloadUrlPattern");
         chromeMirrorUrl = Config.getString("chrome.mirror");
@@ -67,10 +88,97 @@ public abstract class AbstractDriverProperties {
         firefoxMirrorDownloadPattern = Config.getString("firefox.mirrorDownloadUrlPattern");
         edgeBaseUrl = Config.getString("edge.edgeDriverUrl");
         edgeDownloadUrl = Config.getString("edge.edgeDownloadUrlPattern");
+        chromeListings = getMirrors("chrome.listings", "bucket|" + chromeBaseUrl, "npm|" + chromeMirrorUrl);
+        chromeDownloadPatterns = getMirrors("chrome.downloadUrlPatterns", chromeDownloadUrl, chromeMirrorDownloadUrl);
+        firefoxDownloadPatterns = getMirrors("firefox.downloadUrlPatterns", firefoxDownloadPattern, firefoxMirrorDownloadPattern);
+        edgeDownloadPatterns = getMirrors("edge.downloadUrlPatterns", edgeDownloadUrl);
+    }
+
+    /**
+     * @return the configured comma separated mirrors, or the defaults when none is configured
+     */
+    private static List<String> getMirrors(String key, String... defaults) {
+        List<String> mirrors = Config.getList(key).stream()
+                .map(String::trim)
+                .filter(i -> !"".equals(i))
+                .collect(Collectors.toList());
+        return Collections.unmodifiableList(mirrors.isEmpty() ? Arrays.asList(defaults) : mirrors);
+    }
+
+    private static VersionRangeIndex loadBundledGeckoDriverMapping() {
+        try (InputStream in = AbstractDriverProperties.class.getClassLoader().getResourceAsStream("geckodriver_mapping.json")) {
+            if (Objects.isNull(in)) {
+                throw new IOException("unable to find resource: geckodriver_mapping.json");
+            }
+            return VersionRangeIndex.read(in);
+        } catch (IOException e) {
+            log.error(e.toString(), e);
+            return VersionRangeIndex.of(Collections.emptyMap());
+        }
+    }
+
+    protected static Platform detectPlatform() {
+        Platform platform = detectedPlatform;
+        if (platform != null) {
+            return platform;
+        }
+        String osName = System.getProperty("os.name").toLowerCase();
+        if (osName.contains("windows")) {
+            platform = Platform.Windows;
+        } else if (osName.contains("linux")) {
+            platform = Platform.Linux;
+        } else if (osName.contains("mac")) {
+            platform = Platform.Mac;
+        } else {
+            throw new IllegalArgumentException("not supported os type:" + osName);
+        }
+        detectedPlatform = platform;
+        return platform;
+    }
+
+    /**
+     * The arch of the machine rather than of the JVM: an x64 JVM under Rosetta or Windows on ARM emulation, or
+     * a 32 bit JVM on a 64 bit Windows still gets the native driver. {@code platform.arch} overrides the detection.
+     */
+    protected static Arch detectArch() {
+        String configured = Config.getString("platform.arch", "");
+        if (!"".equals(configured)) {
+            return Arch.of(configured);
+        }
+        Arch detected = detectedArch;
+        if (detected != null) {
+            return detected;
+        }
+        String windowsArch = System.getenv("PROCESSOR_ARCHITEW6432");
+        if (Objects.isNull(windowsArch)) {
+            windowsArch = System.getenv("PROCESSOR_ARCHITECTURE");
+        }
+        detected = detectPlatform() == Platform.Windows && !Objects.isNull(windowsArch)
+                ? Arch.of(windowsArch) : Arch.of(System.getProperty("os.arch"));
+        if (detectPlatform() == Platform.Mac && detected == Arch.X64
+                && "1".equals(ProcessExecutor.execute("sysctl -n sysctl.proc_translated", 5000).getStdout().trim())) {
+            detected = Arch.Arm64;
+        }
+        detectedArch = detected;
+        return detected;
     }
 
     protected abstract String findBestMatchLocalVersion(DriverType type);
 
+    /**
+     * @return the newest driver for a browser major version, or an empty string when none is published
+     */
+    protected abstract String findDriverVersion(DriverType type, long browserMajor);
+
+    /**
+     * @return the driver for the browser's next major version, if it is already published, otherwise an empty string
+     */
+    protected String findNextDriverVersion(DriverType type) {
+        return findDriverVersion(type, Version.parseMajor(getLocalDriverVersion(type)) + 1);
+    }
+
+    protected abstract String getDownloadUrl(String driverVersion);
+
     protected abstract File downloadDriver(String driverVersion);
 
     public abstract void configure();
@@ -80,8 +188,7 @@ public abstract class AbstractDriverProperties {
     public abstract AbstractDriverProperties clearCache();
 
     protected String getDriverSavePath(DriverType type) {
-        String tmpdir = System.getProperty("java.io.tmpdir");
-        String driverDir = (currentPlatform.equals(Platform.Windows) || currentPlatform.equals(Platform.Mac)) ? tmpdir + "webdriver" : tmpdir + File.separator + "webdriver";
+        String driverDir = (Objects.isNull(cacheRoot) ? Helper.getCacheRoot() : cacheRoot).getPath();
         switch (type) {
             case Chrome:
                 return driverDir + File.separator + "chrome";
@@ -94,6 +201,55 @@ public abstract class AbstractDriverProperties {
         }
     }
 
+    /**
+     * Probes every archive the driver may be published under on this platform and arch, at once on all mirrors.
+     *
+     * @param urls the mirror urls of an archive name from {@link DriverArtifacts}
+     */
+    protected String resolveDownloadUrl(DriverType type, String version, Function<String, List<String>> urls) {
+        List<String> names = DriverArtifacts.names(type, currentPlatform, arch);
+        String url = names.isEmpty() ? null : MirrorSelector.first(names.stream().map(urls).collect(Collectors.toList()));
+        if (Objects.isNull(url)) {
+            throw new NotFoundDriverAddressException("no " + type.name().toLowerCase() + " driver " + version + " published for "
+                    + currentPlatform.name().toLowerCase() + "-" + arch.getName() + (names.isEmpty() ? ", none is built for it" : ", tried: " + names));
+        }
+        return url;
+    }
+
+    protected String getPinnedDigest(DriverType type, String version, String url) {
+        return Config.getString("checksum." + type.name().toLowerCase() + "." + version + "." + FilenameUtils.getName(url));
+    }
+
+    protected String getStoreKey(DriverType type, String version) {
+        return type.name().toLowerCase() + "/" + getTarget() + "/" + version;
+    }
+
+    /**
+     * @return the {@code <platform>-<arch>} drivers are resolved for, e.g. {@code mac-arm64}
+     */
+    protected String getTarget() {
+        return currentPlatform.name().toLowerCase() + "-" + arch.getName();
+    }
+
+    /**
+     * The cache directory of a version is shared by every arch, e.g. by an x64 and an Arm64 JVM on one Mac, so a
+     * cached driver is only re-used when it was resolved for this platform and arch and is still trusted.
+     */
+    private boolean isReusable(File driver) {
+        if (!Integrity.isTarget(driver, getTarget())) {
+            log.info("cached driver was not resolved for {}, not re-using it: {}", getTarget(), driver.getAbsolutePath());
+            return false;
+        }
+        return Integrity.isTrusted(driver);
+    }
+
+    protected File getVersionIndexFile(DriverType type, String name) {
+        if (!Objects.isNull(indexRoot)) {
+            return new File(indexRoot, type.name().toLowerCase() + File.separator + name + ".index.json");
+        }
+        return new File(getDriverSavePath(type) + File.separator + name + ".index.json");
+    }
+
     protected File getDownloadedDriver(File file) {
         if (!file.exists()) {
             throw new FileNotFoundException("unable to find the directory: " + file.getAbsolutePath());
@@ -102,26 +258,22 @@ public abstract class AbstractDriverProperties {
         if (files.isEmpty()) {
             return new File("");
         }
+        List<File> fileList = files.stream()
+                .filter(i -> isDriverFile(i.getName()))
+                .collect(Collectors.toList());
+        if (fileList.isEmpty()) {
+            return new File("");
+        }
+        return fileList.get(0);
+    }
+
+    protected boolean isDriverFile(String name) {
         switch (currentPlatform) {
             case Windows:
-                List<File> fileList = files.stream()
-                        .filter(i -> "exe".equals(FilenameUtils.getExtension(i.getName())))
-                        .filter(i -> i.getName().contains("driver"))
-                        .collect(Collectors.toList());
-                if (fileList.isEmpty()) {
-                    return new File("");
-                }
-                return fileList.get(0);
+                return "exe".equals(FilenameUtils.getExtension(name)) && name.contains("driver");
             case Linux:
             case Mac:
-                List<File> fileListLinuxOrMac = files.stream()
-                        .filter(i -> "".equals(FilenameUtils.getExtension(i.getName())))
-                        .filter(i -> i.getName().contains("driver"))
-                        .collect(Collectors.toList());
-                if (fileListLinuxOrMac.isEmpty()) {
-                    return new File("");
-                }
-                return fileListLinuxOrMac.get(0);
+                return "".equals(FilenameUtils.getExtension(name)) && name.contains("driver");
             default:
                 throw new IllegalArgumentException("no such type: " + currentPlatform);
         }
@@ -142,11 +294,17 @@ public abstract class AbstractDriverProperties {
         }
         return Arrays.stream(directories)
                 .map(File::getName)
-                .filter(i -> Pattern.matches(browserVersionPattern, i))
+                .filter(i -> browserVersionRegex.matcher(i).matches())
                 .collect(Collectors.toList());
     }
 
     protected File getDriverFile(DriverType type) {
+        File driver = findCachedDriver(type);
+        Metrics.cache(Metrics.Cache.LOCAL, driver.exists());
+        return driver;
+    }
+
+    private File findCachedDriver(DriverType type) {
         String savedPath = getDriverSavePath(type);
         List<String> driverVersionList = getSavedDriverVersions(savedPath);
         if (driverVersionList.isEmpty()) {
@@ -154,14 +312,189 @@ public abstract class AbstractDriverProperties {
         }
         String matchVersion = "";
         if (DriverType.Firefox.equals(type)) {
-            matchVersion = Helper.findBestMatchVersion(getLocalDriverVersion(type), localFireFoxDriverMapping);
+            matchVersion = Helper.findBestMatchVersion(getLocalDriverVersion(type), bundledGeckoDriverMapping);
         } else {
             matchVersion = Helper.findBestMatchVersion(getLocalDriverVersion(type), driverVersionList);
         }
         if ("".equals(matchVersion)) {
             return new File("");
         }
-        return getDownloadedDriver(new File(savedPath + File.separator + matchVersion));
+        File versionDir = new File(savedPath + File.separator + matchVersion);
+        File driver = getDownloadedDriver(versionDir);
+        if (driver.exists() && !isReusable(driver)) {
+            CacheLock lock = CacheLock.acquire(versionDir);
+            try {
+                // another thread or process may have replaced it while we waited for the lock
+                driver = getDownloadedDriver(versionDir);
+                if (driver.exists() && !isReusable(driver)) {
+                    log.warn("cached driver cannot be re-used, it will be downloaded again: {}", driver.getAbsolutePath());
+                    FileUtils.deleteQuietly(driver);
+                    return new File("");
+                }
+            } finally {
+                lock.close();
+            }
+        }
+        if (driver.exists()) {
+            CacheManager.touch(driver);
+        }
+        return driver;
+    }
+
+    protected File provisionDriver(DriverType type, String version) {
+        File versionDir = new File(getDriverSavePath(type) + File.separator + version);
+        CacheLock lock = CacheLock.acquire(versionDir);
+        try {
+            if (versionDir.exists()) {
+                File existing = getDownloadedDriver(versionDir);
+                if (existing.exists() && isReusable(existing)) {
+                    log.info("driver was provisioned by another process, re-use it: {}", existing.getAbsolutePath());
+                    CacheManager.touch(existing);
+                    return existing;
+                }
+            }
+            File stored = DriverStore.materialize(getStoreKey(type, version), versionDir);
+            if (DriverStore.isEnabled()) {
+                Metrics.cache(Metrics.Cache.STORE, stored.exists());
+            }
+            if (stored.exists()) {
+                Integrity.recordTarget(stored, getTarget());
+                CacheManager.touch(stored);
+                return stored;
+            }
+            if (Config.getBoolean("download.streamExtract", true)) {
+                try {
+                    String url = getDownloadUrl(version);
+                    File driver = StreamingExtractor.downloadAndExtract(url, versionDir, this::isDriverFile, getPinnedDigest(type, version, url));
+                    Integrity.recordTarget(driver, getTarget());
+                    DriverStore.publish(getStoreKey(type, version), driver, Integrity.recordedSha256(driver));
+                    CacheManager.touch(driver);
+                    return driver;
+                } catch (DownloadFailedException e) {
+                    log.warn("streaming extraction failed, fall back to downloading the archive: {}", e.getMessage());
+                }
+            }
+            // the archive download only checks a pinned digest, the published MD5 is checked by the streaming path
+            String archiveUrl = getDownloadUrl(version);
+            String pinned = getPinnedDigest(type, version, archiveUrl);
+            boolean verified = !Objects.isNull(pinned) && !"".equals(pinned);
+            if (!verified) {
+                Integrity.checkUnverifiedAllowed(archiveUrl);
+            }
+            File driverFile = downloadDriver(version);
+            Helper.unzip(driverFile, driverFile.getParent());
+
+            File driver = getDownloadedDriver(driverFile.getParentFile());
+            if (!driver.exists()) {
+                throw new FileNotFoundException("unable to find driver in directory: " + driver.getAbsolutePath());
+            }
+            if (!currentPlatform.equals(Platform.Windows)) {
+                driver.setExecutable(true, false);
+            }
+            try (Metrics.Timer timer = Metrics.start(Metrics.Phase.VERIFY)) {
+                String sha256 = Downloader.sha256(driver);
+                if (verified) {
+                    Integrity.record(driver, sha256);
+                } else {
+                    Integrity.recordUnverified(driver, sha256);
+                }
+                Integrity.recordTarget(driver, getTarget());
+                DriverStore.publish(getStoreKey(type, version), driver, sha256);
+                if (!Config.getBoolean("cache.keepArchives", false)) {
+                    FileUtils.deleteQuietly(driverFile);
+                }
+                timer.bytes(driver.length()).success();
+            } catch (IOException e) {
+                log.warn("unable to record the digest of {}: {}", driver, e.toString());
+            }
+            CacheManager.touch(driver);
+            return driver;
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * Resolves the driver from the configured {@code bundle.file} without any network access. In
+     * {@code bundle.offline} mode a browser the bundle has no driver for is an error instead of a download.
+     *
+     * @return the extracted driver, or an empty file when no bundle is configured or it has no match
+     */
+    protected File resolveFromBundle(DriverType type) {
+        String bundleFile = Config.getString("bundle.file", "");
+        if ("".equals(bundleFile)) {
+            return new File("");
+        }
+        boolean offline = Config.getBoolean("bundle.offline", true);
+        try {
+            DriverBundle bundle = DriverBundle.open(new File(bundleFile));
+            List<String> versions = bundle.versions(type, currentPlatform, arch);
+            String version = findBundledVersion(type, versions);
+            Metrics.cache(Metrics.Cache.BUNDLE, !"".equals(version));
+            if ("".equals(version)) {
+                if (offline) {
+                    throw new NotFoundDriverAddressException("no " + type + " driver for browser version " + getLocalDriverVersion(type)
+                            + " on " + currentPlatform + "-" + arch.getName() + " in bundle: " + bundleFile + ", bundled versions: " + versions);
+                }
+                return new File("");
+            }
+            File versionDir = new File(getDriverSavePath(type) + File.separator + version);
+            CacheLock lock = CacheLock.acquire(versionDir);
+            try {
+                File existing = versionDir.exists() ? getDownloadedDriver(versionDir) : new File("");
+                File driver = existing.exists() && isReusable(existing) ? existing : new File("");
+                if (!driver.exists()) {
+                    driver = bundle.extract(bundle.find(type, currentPlatform, arch, version), versionDir);
+                    Integrity.recordTarget(driver, getTarget());
+                }
+                CacheManager.touch(driver);
+                return driver;
+            } finally {
+                lock.close();
+            }
+        } catch (IOException e) {
+            log.error(e.toString(), e);
+            if (offline) {
+                throw new NotFoundDriverAddressException("unable to read driver bundle: " + bundleFile + ", " + e.getMessage());
+            }
+            return new File("");
+        }
+    }
+
+    private String findBundledVersion(DriverType type, List<String> versions) {
+        if (versions.isEmpty()) {
+            return "";
+        }
+        String localVersion = getLocalDriverVersion(type);
+        if (!DriverType.Firefox.equals(type)) {
+            return Helper.findBestMatchVersion(localVersion, versions);
+        }
+        long major = Version.parseMajor(localVersion);
+        return versions.stream()
+                .filter(i -> {
+                    List<Integer> range = bundledGeckoDriverMapping.toMap().get(i);
+                    return !Objects.isNull(range) && range.get(0) <= major && (range.size() < 2 || major <= range.get(1));
+                })
+                .max(Comparator.comparing(Version::parse))
+                .orElse("");
+    }
+
+    /**
+     * Makes sure the driver for the installed browser and, when published, the one for its next major version
+     * are in the cache, so a browser update does not put a download into the next test run.
+     */
+    public List<File> prefetch(DriverType type) {
+        List<File> drivers = new ArrayList<>();
+        String current = findBestMatchLocalVersion(type);
+        File driver = provisionDriver(type, current);
+        recordFingerprint(type, driver);
+        drivers.add(driver);
+        String next = findNextDriverVersion(type);
+        if (!"".equals(next) && !next.equals(current)) {
+            log.info("prefetching {} driver {} for the next browser version", type, next);
+            drivers.add(provisionDriver(type, next));
+        }
+        return drivers;
     }
 
     protected void buildChromeProp() {
@@ -177,15 +510,13 @@ public abstract class AbstractDriverProperties {
         platformListMap.put(Platform.Windows, windowsCommand);
         platformListMap.put(Platform.Linux, linuxCommand);
         platformListMap.put(Platform.Mac, macCommand);
-        driverPlatformCommands.put(DriverType.Chrome, platformListMap);
+        driverPlatformCommands.put(DriverType.Chrome, Collections.unmodifiableMap(platformListMap));
+        driverPlatformProbes.put(DriverType.Chrome, buildPlatformList("probe", "chrome"));
+        driverPlatformExecutables.put(DriverType.Chrome, buildPlatformList("browser", "chrome"));
     }
 
     protected void buildFirefoxProp() {
-        URL url = AbstractDriverProperties.class.getClassLoader().getResource("geckodriver_mapping.json");
-        String versionJson = Helper.readFileToString(FileUtils.toFile(url));
-        Type typeToken = new TypeToken<Map<String, List<Integer>>>() {
-        }.getType();
-        localFireFoxDriverMapping = (Map<String, List<Integer>>) GsonUtils.parseToObject(versionJson, typeToken);
+        localFireFoxDriverMapping = bundledGeckoDriverMapping.toMap();
         List<String> windowsCommand = Lists.newArrayList(
                 Config.getString("command.firefox.windows.01"),
                 Config.getString("command.firefox.windows.02"),
@@ -197,7 +528,9 @@ public abstract class AbstractDriverProperties {
         platformListMap.put(Platform.Windows, windowsCommand);
         platformListMap.put(Platform.Linux, linuxCommand);
         platformListMap.put(Platform.Mac, macCommand);
-        driverPlatformCommands.put(DriverType.Firefox, platformListMap);
+        driverPlatformCommands.put(DriverType.Firefox, Collections.unmodifiableMap(platformListMap));
+        driverPlatformProbes.put(DriverType.Firefox, buildPlatformList("probe", "firefox"));
+        driverPlatformExecutables.put(DriverType.Firefox, buildPlatformList("browser", "firefox"));
     }
 
     protected void buildEdgeProp() {
@@ -212,11 +545,104 @@ public abstract class AbstractDriverProperties {
         platformListMap.put(Platform.Windows, windowsCommand);
         platformListMap.put(Platform.Linux, linuxCommand);
         platformListMap.put(Platform.Mac, macCommand);
-        driverPlatformCommands.put(DriverType.Edge, platformListMap);
+        driverPlatformCommands.put(DriverType.Edge, Collections.unmodifiableMap(platformListMap));
+        driverPlatformProbes.put(DriverType.Edge, buildPlatformList("probe", "edge"));
+        driverPlatformExecutables.put(DriverType.Edge, buildPlatformList("browser", "edge"));
+    }
+
+    private static Map<Platform, List<String>> buildPlatformList(String prefix, String browser) {
+        Map<Platform, List<String>> lists = new EnumMap<>(Platform.class);
+        for (Platform platform : Platform.values()) {
+            List<String> values = new ArrayList<>();
+            for (int i = 1; i < 100; i++) {
+                String value = Config.getString(String.format("%s.%s.%s.%02d", prefix, browser, platform.name().toLowerCase(), i));
+                if (Objects.isNull(value)) {
+                    break;
+                }
+                values.add(value);
+            }
+            lists.put(platform, values);
+        }
+        return lists;
+    }
+
+    /**
+     * @return the installed browser executable with symlinks resolved, a bare name is looked up on the PATH;
+     * null when none of the configured {@code browser.<type>.<platform>.NN} candidates exists
+     */
+    protected File findBrowserExecutable(DriverType type) {
+        for (String candidate : driverPlatformExecutables.get(type).get(currentPlatform)) {
+            String path = VersionProbe.expand(candidate);
+            List<File> files = new ArrayList<>();
+            if (path.contains("/") || path.contains("\\")) {
+                files.add(new File(path));
+            } else {
+                for (String directory : System.getenv().getOrDefault("PATH", "").split(File.pathSeparator)) {
+                    files.add(new File(directory, path));
+                }
+            }
+            for (File file : files) {
+                if (file.isFile()) {
+                    try {
+                        return file.toPath().toRealPath().toFile();
+                    } catch (IOException e) {
+                        return file.getAbsoluteFile();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    protected VersionProbe.Result probeBrowser(DriverType type) {
+        Fingerprint fingerprint = Fingerprint.read(getFingerprintFile(type));
+        VersionProbe.Result result;
+        try (Metrics.Timer timer = Metrics.start(Metrics.Phase.PROBE, type.name().toLowerCase())) {
+            if (!Objects.isNull(fingerprint) && fingerprint.browserUnchanged(findBrowserExecutable(type), arch, Config.hash())) {
+                result = fingerprint.toProbeResult();
+            } else {
+                result = VersionProbe.probe(driverPlatformProbes.get(type).get(currentPlatform), driverPlatformCommands.get(type).get(currentPlatform));
+            }
+            if (!Objects.isNull(result)) {
+                timer.success();
+            }
+        }
+        if (!Objects.isNull(result)) {
+            lastProbes.put(type, result);
+        }
+        return result;
+    }
+
+    protected File getFingerprintFile(DriverType type) {
+        return new File(getDriverSavePath(type) + File.separator + "fingerprint.json");
+    }
+
+    protected File getFingerprintedDriver(DriverType type) {
+        Fingerprint fingerprint = Fingerprint.read(getFingerprintFile(type));
+        if (!Objects.isNull(fingerprint) && fingerprint.browserUnchanged(findBrowserExecutable(type), arch, Config.hash())
+                && fingerprint.driverPresent()) {
+            Metrics.cache(Metrics.Cache.FINGERPRINT, true);
+            CacheManager.touch(fingerprint.getDriver());
+            return fingerprint.getDriver();
+        }
+        Metrics.cache(Metrics.Cache.FINGERPRINT, false);
+        return new File("");
+    }
+
+    protected void recordFingerprint(DriverType type, File driver) {
+        VersionProbe.Result probe = lastProbes.get(type);
+        Fingerprint fingerprint = Fingerprint.of(probe, findBrowserExecutable(type), arch, Config.hash(), driver);
+        if (!Objects.isNull(fingerprint)) {
+            fingerprint.write(getFingerprintFile(type));
+        }
     }
 
     protected static List<String> getAllMatch(String regex, String text) {
-        Matcher m = Pattern.compile(regex).matcher(text);
+        return getAllMatch(Pattern.compile(regex), text);
+    }
+
+    protected static List<String> getAllMatch(Pattern pattern, String text) {
+        Matcher m = pattern.matcher(text);
         List<String> find = new ArrayList<>();
         while (m.find()) {
             find.add(m.group());
@@ -225,14 +651,18 @@ public abstract class AbstractDriverProperties {
     }
 
     protected static String parseBrowserVersion(String text) {
-        List<String> matches = getAllMatch(browserVersionPattern, text);
+        List<String> matches = getAllMatch(browserVersionRegex, text);
         return !matches.isEmpty() ? matches.get(0) : "";
     }
 
+    /**
+     * @deprecated blocks until the process closes its output, use {@link io.driver.utils.ProcessExecutor}
+     */
+    @Deprecated
     protected static String parseBrowserVersion(Process process) {
         BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(process.getInputStream()), 8192);
         String text = bufferedReader.lines().filter(i -> !"".equals(i)).collect(Collectors.joining());
-        List<String> matches = getAllMatch(browserVersionPattern, text);
+        List<String> matches = getAllMatch(browserVersionRegex, text);
         return !matches.isEmpty() ? matches.get(0) : "";
     }
 
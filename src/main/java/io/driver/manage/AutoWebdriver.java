@@ -3,6 +3,9 @@ package io.driver.manage;
 import io.driver.manage.browsers.Chrome;
 import io.driver.manage.browsers.Edge;
 import io.driver.manage.browsers.Firefox;
+import io.driver.manage.enums.DriverType;
+import io.driver.utils.AsyncExecutor;
+import io.driver.utils.Config;
 import io.driver.utils.Helper;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
@@ -12,9 +15,16 @@ import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -24,46 +34,101 @@ import static io.driver.utils.Helper.unzip;
 
 @Slf4j
 public abstract class AutoWebdriver extends AbstractDriverProperties {
+    private static final ConcurrentMap<DriverType, AutoWebdriver> managers = new ConcurrentHashMap<>();
 
     public AutoWebdriver() {
     }
 
     public static void configChromeDriver() {
         if (Objects.isNull(System.getProperty(SetDriver.chrome))) {
-            Chrome chrome = new Chrome();
-            chrome.configure();
+            DriverRegistry.resolve(DriverType.Chrome, () -> of(DriverType.Chrome));
         }
     }
 
     public static void configChromeDriver(Boolean clearCache) {
-        Chrome chrome = new Chrome();
-        chrome.clearCache().configure();
+        DriverRegistry.refresh(DriverType.Chrome, () -> of(DriverType.Chrome));
     }
 
     public static void configEdgeDriver() {
         if (Objects.isNull(System.getProperty(SetDriver.edge))) {
-            Edge edge = new Edge();
-            edge.configure();
+            DriverRegistry.resolve(DriverType.Edge, () -> of(DriverType.Edge));
         }
     }
 
     public static void configEdgeDriver(Boolean clearCache) {
-        Edge edge = new Edge();
-        edge.clearCache().configure();
+        DriverRegistry.refresh(DriverType.Edge, () -> of(DriverType.Edge));
     }
 
 
     public static void configFirefoxDriver() {
         if (Objects.isNull(System.getProperty(SetDriver.firefox))) {
-            Firefox firefox = new Firefox();
-            firefox.configure();
+            DriverRegistry.resolve(DriverType.Firefox, () -> of(DriverType.Firefox));
         }
     }
 
     public static void configFirefoxDriver(Boolean clearCache) {
-        Firefox firefox = new Firefox();
-        firefox.clearCache().configure();
+        DriverRegistry.refresh(DriverType.Firefox, () -> of(DriverType.Firefox));
     }
 
+    public static Map<DriverType, CompletableFuture<String>> configDriversAsync(DriverType... types) {
+        return configDriversAsync(AsyncExecutor.get(), types);
+    }
+
+    public static Map<DriverType, CompletableFuture<String>> configDriversAsync(Executor executor, DriverType... types) {
+        Map<DriverType, CompletableFuture<String>> futures = new EnumMap<>(DriverType.class);
+        for (DriverType type : types) {
+            futures.computeIfAbsent(type, t -> CompletableFuture.supplyAsync(() -> configDriver(t), executor));
+        }
+        return futures;
+    }
+
+    public static Map<DriverType, String> configDrivers(DriverType... types) {
+        Map<DriverType, CompletableFuture<String>> futures = configDriversAsync(types);
+        Map<DriverType, String> drivers = new EnumMap<>(DriverType.class);
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+            futures.forEach((type, future) -> drivers.put(type, future.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return drivers;
+    }
+
+    private static String configDriver(DriverType type) {
+        String configured = System.getProperty(DriverRegistry.property(type));
+        if (!Objects.isNull(configured)) {
+            return configured;
+        }
+        return DriverRegistry.resolve(type, () -> of(type));
+    }
+
+    /**
+     * @return the shared manager of the browser; it is immutable once built and only replaced when the
+     * configuration has changed since
+     */
+    public static AutoWebdriver of(DriverType type) {
+        AutoWebdriver manager = managers.get(type);
+        if (manager != null && manager.configGeneration == Config.getGeneration()) {
+            return manager;
+        }
+        return managers.compute(type, (t, current) ->
+                current != null && current.configGeneration == Config.getGeneration() ? current : create(t));
+    }
+
+    static AutoWebdriver create(DriverType type) {
+        switch (type) {
+            case Chrome:
+                return new Chrome();
+            case Firefox:
+                return new Firefox();
+            case Edge:
+                return new Edge();
+            default:
+                throw new IllegalArgumentException("no such type: " + type);
+        }
+    }
 
 }
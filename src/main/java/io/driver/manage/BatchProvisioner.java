@@ -0,0 +1,238 @@
+package io.driver.manage;
+
+import io.driver.manage.enums.Arch;
+import io.driver.manage.enums.DriverType;
+import io.driver.manage.enums.Platform;
+import io.driver.utils.Config;
+import io.driver.utils.Version;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Provisions drivers for other platforms than the running one, e.g. to build grid node images. Every target is a
+ * browser, a platform, an arch and a version spec: a browser major ({@code 114}), a range of them
+ * ({@code 112-115}, the newest driver of each) or an exact driver version ({@code 114.0.5735.90}). The listing of
+ * each browser is fetched once and shared, then all drivers are downloaded concurrently, at most
+ * {@code batch.threads} at a time, into {@code <out>/<platform>-<arch>/<browser>/<version>/}; point
+ * {@code cache.dir} of a node at its platform directory and the drivers are found without a download:
+ * <pre>
+ * java -cp auto-webdriver.jar io.driver.manage.BatchProvisioner out chrome:linux-64:112-115 firefox:linux-arm64:115 edge:mac-arm64:114
+ * </pre>
+ */
+@Slf4j
+public class BatchProvisioner {
+    private final File output;
+    private final int threads;
+    private final Map<String, Target> targets = new LinkedHashMap<>();
+
+    public BatchProvisioner(File output) {
+        this(output, Config.getInt("batch.threads", 8));
+    }
+
+    public BatchProvisioner(File output, int threads) {
+        this.output = output;
+        this.threads = Math.max(1, threads);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("usage: BatchProvisioner <output dir> <browser>:<platform>-<arch>:<versions> ...");
+        }
+        BatchProvisioner batch = new BatchProvisioner(new File(args[0]));
+        for (int i = 1; i < args.length; i++) {
+            batch.add(args[i]);
+        }
+        List<Result> results = batch.run();
+        results.forEach(i -> log.info("{}", i));
+        if (results.stream().anyMatch(i -> Objects.isNull(i.driver))) {
+            throw new IllegalStateException("failed to provision " + results.stream().filter(i -> Objects.isNull(i.driver)).count() + " drivers");
+        }
+    }
+
+    /**
+     * @param target {@code <browser>:<platform>-<arch>:<versions>}, e.g. {@code chrome:linux-64:112-115}
+     */
+    public BatchProvisioner add(String target) {
+        String[] parts = target.split(":");
+        int separator = parts.length == 3 ? parts[1].lastIndexOf('-') : -1;
+        if (separator < 0) {
+            throw new IllegalArgumentException("expected <browser>:<platform>-<arch>:<versions>, got: " + target);
+        }
+        return add(parseEnum(DriverType.values(), parts[0]), parseEnum(Platform.values(), parts[1].substring(0, separator)),
+                Arch.of(parts[1].substring(separator + 1)), parts[2]);
+    }
+
+    public BatchProvisioner add(DriverType type, Platform platform, Arch arch, String versions) {
+        Target target = new Target(type, platform, arch, versions);
+        targets.putIfAbsent(target.toString(), target);
+        return this;
+    }
+
+    /**
+     * Resolves and downloads every target; a failed driver is reported in its result instead of failing the batch.
+     */
+    public List<Result> run() {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "batch-provision");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            long start = System.currentTimeMillis();
+            Map<DriverType, List<Target>> byType = targets.values().stream()
+                    .collect(Collectors.groupingBy(i -> i.type, () -> new EnumMap<>(DriverType.class), Collectors.toList()));
+            List<CompletableFuture<List<Result>>> resolved = new ArrayList<>();
+            for (List<Target> group : byType.values()) {
+                CompletableFuture<List<Result>> first = CompletableFuture.supplyAsync(() -> resolve(group.get(0)), executor);
+                resolved.add(first);
+                for (Target target : group.subList(1, group.size())) {
+                    resolved.add(first.handle((ignored, e) -> target).thenApplyAsync(this::resolve, executor));
+                }
+            }
+            Map<String, CompletableFuture<Result>> downloads = new LinkedHashMap<>();
+            for (CompletableFuture<List<Result>> future : resolved) {
+                for (Result result : future.join()) {
+                    downloads.computeIfAbsent(result.getKey(), k -> result.error != null
+                            ? CompletableFuture.completedFuture(result) : CompletableFuture.supplyAsync(() -> provision(result), executor));
+                }
+            }
+            List<Result> results = downloads.values().stream().map(CompletableFuture::join).collect(Collectors.toList());
+            log.info("provisioned {} of {} drivers in {} ms", results.stream().filter(i -> !Objects.isNull(i.driver)).count(),
+                    results.size(), System.currentTimeMillis() - start);
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Result> resolve(Target target) {
+        List<Result> results = new ArrayList<>();
+        try {
+            AutoWebdriver manager = manager(target);
+            if (target.exact) {
+                results.add(new Result(target, target.versions));
+                return results;
+            }
+            Set<String> versions = new LinkedHashSet<>();
+            for (long major = target.fromMajor; major <= target.toMajor; major++) {
+                String version = manager.findDriverVersion(target.type, major);
+                if ("".equals(version)) {
+                    log.warn("no {} driver published for browser version {}", target.type, major);
+                } else {
+                    versions.add(version);
+                }
+            }
+            if (versions.isEmpty()) {
+                throw new IllegalArgumentException("no " + target.type + " driver for browser versions " + target.versions);
+            }
+            versions.forEach(i -> results.add(new Result(target, i)));
+        } catch (RuntimeException e) {
+            log.error(e.toString(), e);
+            Result failed = new Result(target, target.versions);
+            failed.error = e;
+            results.add(failed);
+        }
+        return results;
+    }
+
+    private Result provision(Result result) {
+        try {
+            result.driver = manager(result.target).provisionDriver(result.target.type, result.version);
+        } catch (RuntimeException e) {
+            log.error(e.toString(), e);
+            result.error = e;
+        }
+        return result;
+    }
+
+    private AutoWebdriver manager(Target target) {
+        AutoWebdriver manager = AutoWebdriver.create(target.type);
+        manager.currentPlatform = target.platform;
+        manager.arch = target.arch;
+        manager.cacheRoot = new File(output, target.platform.name().toLowerCase() + "-" + target.arch.getName());
+        manager.indexRoot = new File(output, ".index");
+        return manager;
+    }
+
+    private static <T extends Enum<T>> T parseEnum(T[] values, String name) {
+        for (T value : values) {
+            if (value.name().equalsIgnoreCase(name.trim())
+                    || value instanceof Platform && ((Platform) value).getName().equalsIgnoreCase(name.trim())) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("no such value: " + name + ", expected one of: " + Arrays.toString(values));
+    }
+
+    private static class Target {
+        private final DriverType type;
+        private final Platform platform;
+        private final Arch arch;
+        private final String versions;
+        private final boolean exact;
+        private long fromMajor;
+        private long toMajor;
+
+        private Target(DriverType type, Platform platform, Arch arch, String versions) {
+            this.type = type;
+            this.platform = platform;
+            this.arch = arch;
+            this.versions = versions.trim();
+            this.exact = this.versions.contains(".");
+            if (!exact) {
+                String[] bounds = this.versions.split("-", 2);
+                fromMajor = Version.parseMajor(bounds[0]);
+                toMajor = bounds.length == 2 ? Version.parseMajor(bounds[1]) : fromMajor;
+                if (fromMajor < 0 || toMajor < fromMajor) {
+                    throw new IllegalArgumentException("invalid version range: " + versions);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return type.name().toLowerCase() + ":" + platform.name().toLowerCase() + "-" + arch.getName() + ":" + versions;
+        }
+    }
+
+    @Getter
+    public static class Result {
+        @Getter(AccessLevel.NONE)
+        private final Target target;
+        private final String version;
+        private File driver;
+        private Exception error;
+
+        private Result(Target target, String version) {
+            this.target = target;
+            this.version = version;
+        }
+
+        public DriverType getType() {
+            return target.type;
+        }
+
+        public Platform getPlatform() {
+            return target.platform;
+        }
+
+        public Arch getArch() {
+            return target.arch;
+        }
+
+        private String getKey() {
+            return getType() + "/" + getPlatform() + "-" + getArch().getName() + "/" + version;
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + " -> " + (Objects.isNull(driver) ? "failed: " + error : driver.getAbsolutePath());
+        }
+    }
+}
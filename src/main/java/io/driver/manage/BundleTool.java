@@ -0,0 +1,113 @@
+package io.driver.manage;
+
+import io.driver.manage.enums.Arch;
+import io.driver.manage.enums.DriverType;
+import io.driver.manage.enums.Platform;
+import io.driver.utils.Helper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Builds and lists {@link DriverBundle}s on a connected machine. Drivers are taken from driver caches, one per
+ * platform (filled by {@link Prefetcher} or normal runs, laid out as {@code <browser>/<version>/<driver>});
+ * without a cache argument the local cache for the current platform is packed:
+ * <pre>
+ * java -cp auto-webdriver.jar io.driver.manage.BundleTool pack drivers.awdb [--deflate] [linux-64=/caches/linux ...]
+ * java -cp auto-webdriver.jar io.driver.manage.BundleTool list drivers.awdb
+ * </pre>
+ */
+@Slf4j
+public class BundleTool {
+
+    private BundleTool() {
+
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("usage: BundleTool pack <bundle> [--deflate] [<platform>-<arch>=<cache dir> ...] | list <bundle>");
+        }
+        File bundle = new File(args[1]);
+        switch (args[0]) {
+            case "pack":
+                boolean deflate = false;
+                Map<String, File> caches = new LinkedHashMap<>();
+                for (int i = 2; i < args.length; i++) {
+                    if ("--deflate".equals(args[i])) {
+                        deflate = true;
+                    } else {
+                        String[] parts = args[i].split("=", 2);
+                        if (parts.length != 2) {
+                            throw new IllegalArgumentException("expected <platform>-<arch>=<cache dir>, got: " + args[i]);
+                        }
+                        caches.put(parts[0], new File(parts[1]));
+                    }
+                }
+                if (caches.isEmpty()) {
+                    caches.put(AbstractDriverProperties.detectPlatform().name() + "-" + AbstractDriverProperties.detectArch().getName(), Helper.getCacheRoot());
+                }
+                pack(bundle, caches, deflate);
+                break;
+            case "list":
+                try (DriverBundle opened = DriverBundle.open(bundle)) {
+                    for (DriverBundle.Entry entry : opened.entries()) {
+                        System.out.println(entry + " " + entry.getLength() + " bytes, sha256 " + entry.getSha256());
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown command: " + args[0]);
+        }
+    }
+
+    /**
+     * @param caches driver cache directories keyed by {@code <platform>-<arch>}, e.g. {@code windows-64} or {@code mac-arm64}
+     * @return the number of bundled drivers
+     */
+    public static int pack(File bundle, Map<String, File> caches, boolean deflate) throws IOException {
+        DriverBundle.Writer writer = new DriverBundle.Writer(deflate);
+        for (Map.Entry<String, File> cache : caches.entrySet()) {
+            int separator = cache.getKey().lastIndexOf('-');
+            if (separator < 0) {
+                throw new IllegalArgumentException("expected <platform>-<arch>, got: " + cache.getKey());
+            }
+            Platform platform = parsePlatform(cache.getKey().substring(0, separator));
+            Arch arch = Arch.of(cache.getKey().substring(separator + 1));
+            for (DriverType type : DriverType.values()) {
+                File[] versions = new File(cache.getValue(), type.name().toLowerCase()).listFiles(File::isDirectory);
+                if (Objects.isNull(versions)) {
+                    continue;
+                }
+                for (File versionDir : versions) {
+                    if (!AbstractDriverProperties.browserVersionRegex.matcher(versionDir.getName()).matches()) {
+                        continue;
+                    }
+                    File[] drivers = versionDir.listFiles(i -> i.isFile() && !i.getName().startsWith(".") && i.getName().contains("driver")
+                            && !i.getName().endsWith(".zip") && !i.getName().endsWith(".gz"));
+                    if (Objects.isNull(drivers) || drivers.length == 0) {
+                        continue;
+                    }
+                    log.info("bundling {} driver {} for {}-{}: {}", type, versionDir.getName(), platform, arch.getName(), drivers[0]);
+                    writer.add(type, platform, arch, versionDir.getName(), drivers[0]);
+                }
+            }
+        }
+        if (writer.size() == 0) {
+            throw new IllegalArgumentException("no drivers found in: " + caches.values());
+        }
+        writer.write(bundle);
+        return writer.size();
+    }
+
+    private static Platform parsePlatform(String name) {
+        for (Platform platform : Platform.values()) {
+            if (platform.name().equalsIgnoreCase(name) || platform.getName().equalsIgnoreCase(name)) {
+                return platform;
+            }
+        }
+        throw new IllegalArgumentException("no such platform: " + name + ", expected one of: " + Arrays.toString(Platform.values()));
+    }
+}
@@ -0,0 +1,57 @@
+package io.driver.manage;
+
+import io.driver.manage.enums.Arch;
+import io.driver.manage.enums.DriverType;
+import io.driver.manage.enums.Platform;
+
+import java.util.*;
+
+/**
+ * The published archive names of every driver per platform and arch, most specific first: the native build,
+ * then the ones the platform can still run (x64 under Rosetta or Windows on ARM emulation, 32 bit on 64 bit
+ * Windows). Chrome names the archive {@code chromedriver_<name>.zip}, Edge {@code edgedriver_<name>.zip} and
+ * geckodriver {@code geckodriver-v<version>-<name>}. An empty list means the browser publishes no driver that
+ * runs there, e.g. chromedriver on ARM64 Linux.
+ */
+public class DriverArtifacts {
+    private static final Map<DriverType, Map<Platform, Map<Arch, List<String>>>> artifacts = new EnumMap<>(DriverType.class);
+
+    static {
+        add(DriverType.Chrome, Platform.Windows, Arch.X86, "win32");
+        add(DriverType.Chrome, Platform.Windows, Arch.X64, "win32");
+        add(DriverType.Chrome, Platform.Windows, Arch.Arm64, "win32");
+        add(DriverType.Chrome, Platform.Linux, Arch.X64, "linux64");
+        add(DriverType.Chrome, Platform.Mac, Arch.X64, "mac64");
+        add(DriverType.Chrome, Platform.Mac, Arch.Arm64, "mac_arm64", "mac64_m1", "mac64");
+
+        add(DriverType.Edge, Platform.Windows, Arch.X86, "win32");
+        add(DriverType.Edge, Platform.Windows, Arch.X64, "win64", "win32");
+        add(DriverType.Edge, Platform.Windows, Arch.Arm64, "arm64", "win64", "win32");
+        add(DriverType.Edge, Platform.Linux, Arch.X64, "linux64");
+        add(DriverType.Edge, Platform.Mac, Arch.X64, "mac64");
+        add(DriverType.Edge, Platform.Mac, Arch.Arm64, "mac64_m1", "mac64");
+
+        add(DriverType.Firefox, Platform.Windows, Arch.X86, "win32.zip");
+        add(DriverType.Firefox, Platform.Windows, Arch.X64, "win64.zip", "win32.zip");
+        add(DriverType.Firefox, Platform.Windows, Arch.Arm64, "win-aarch64.zip", "win64.zip", "win32.zip");
+        add(DriverType.Firefox, Platform.Linux, Arch.X86, "linux32.tar.gz");
+        add(DriverType.Firefox, Platform.Linux, Arch.X64, "linux64.tar.gz");
+        add(DriverType.Firefox, Platform.Linux, Arch.Arm64, "linux-aarch64.tar.gz");
+        add(DriverType.Firefox, Platform.Mac, Arch.X64, "macos.tar.gz");
+        add(DriverType.Firefox, Platform.Mac, Arch.Arm64, "macos-aarch64.tar.gz", "macos.tar.gz");
+    }
+
+    private DriverArtifacts() {
+
+    }
+
+    public static List<String> names(DriverType type, Platform platform, Arch arch) {
+        return artifacts.get(type).getOrDefault(platform, Collections.emptyMap()).getOrDefault(arch, Collections.emptyList());
+    }
+
+    private static void add(DriverType type, Platform platform, Arch arch, String... names) {
+        artifacts.computeIfAbsent(type, k -> new EnumMap<>(Platform.class))
+                .computeIfAbsent(platform, k -> new EnumMap<>(Arch.class))
+                .put(arch, Collections.unmodifiableList(Arrays.asList(names)));
+    }
+}
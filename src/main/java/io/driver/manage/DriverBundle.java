@@ -0,0 +1,485 @@
+package io.driver.manage;
+
+import io.driver.exception.IntegrityCheckFailedException;
+import io.driver.manage.enums.Arch;
+import io.driver.manage.enums.DriverType;
+import io.driver.manage.enums.Platform;
+import io.driver.utils.Helper;
+import io.driver.utils.Integrity;
+import io.driver.utils.Metrics;
+import io.driver.utils.Version;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Single file bundle of drivers for several browsers, platforms and versions, for machines without network
+ * access. Layout (big endian): a 32 byte header ({@code AWDB}, format, entry count, index and data offsets),
+ * fixed size index records sorted by browser, platform, arch and version, then the driver bytes (raw or deflated).
+ * The index is memory mapped and searched in place; only the selected driver is read and it is checked against
+ * the SHA-256 in its record while it is written out.
+ */
+@Slf4j
+public class DriverBundle implements Closeable {
+    private static final int magic = 0x41574442;
+    private static final int format = 1;
+    private static final int headerSize = 32;
+    private static final int recordSize = 128;
+    private static final int maxNameLength = 55;
+    private static final int flagDeflated = 1;
+    private static final DriverType[] browserCodes = {DriverType.Chrome, DriverType.Firefox, DriverType.Edge};
+    private static final Platform[] platformCodes = {Platform.Windows, Platform.Linux, Platform.Mac};
+    private static final ConcurrentMap<String, DriverBundle> opened = new ConcurrentHashMap<>();
+    private final File file;
+    private final FileChannel channel;
+    private final MappedByteBuffer index;
+    private final int count;
+
+    private DriverBundle(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(headerSize);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                continue;
+            }
+            header.flip();
+            if (header.remaining() < headerSize || header.getInt(0) != magic || header.getInt(4) != format) {
+                throw new IOException("not a driver bundle: " + file);
+            }
+            this.count = header.getInt(8);
+            long dataOffset = headerSize + (long) count * recordSize;
+            if (count < 0 || dataOffset > channel.size()) {
+                throw new IOException("driver bundle index exceeds the file: " + file);
+            }
+            this.index = channel.map(FileChannel.MapMode.READ_ONLY, headerSize, (long) count * recordSize);
+            for (int i = 0; i < count; i++) {
+                checkRecord(i, dataOffset, channel.size());
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static DriverBundle open(File file) throws IOException {
+        String key = file.getCanonicalPath();
+        DriverBundle bundle = opened.get(key);
+        if (bundle == null) {
+            DriverBundle created = new DriverBundle(file);
+            bundle = opened.putIfAbsent(key, created);
+            if (bundle == null) {
+                bundle = created;
+            } else {
+                created.close();
+            }
+        }
+        return bundle;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public List<String> versions(DriverType type, Platform platform, Arch arch) {
+        long prefix = prefix(type, platform, arch);
+        List<String> versions = new ArrayList<>();
+        for (int i = lowerBound(prefix, Long.MIN_VALUE); i < count && prefixAt(i) == prefix; i++) {
+            versions.add(versionAt(i));
+        }
+        return versions;
+    }
+
+    public Entry find(DriverType type, Platform platform, Arch arch, String version) {
+        long prefix = prefix(type, platform, arch);
+        long key = pack(Version.parse(version));
+        int i = lowerBound(prefix, key);
+        return i < count && prefixAt(i) == prefix && versionKeyAt(i) == key ? entryAt(i) : null;
+    }
+
+    public List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(entryAt(i));
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the driver of {@code entry} into {@code directory}, verified against the recorded digest.
+     */
+    public File extract(Entry entry, File directory) throws IOException {
+        FileUtils.forceMkdir(directory);
+        File target = new File(directory, entry.name);
+        if (!isPlainName(entry.name) || !target.getCanonicalFile().getParentFile().equals(directory.getCanonicalFile())) {
+            throw new IOException("bundled driver name " + entry.name + " escapes the directory: " + directory);
+        }
+        File tmp = new File(directory, "." + entry.name + "." + UUID.randomUUID() + ".tmp");
+        MessageDigest digest = Integrity.sha256();
+        Inflater inflater = new Inflater();
+        try (Metrics.Timer timer = Metrics.start(Metrics.Phase.EXTRACT, entry.type.name().toLowerCase(), file.getName())) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.storedLength);
+            InputStream in = new BufferInputStream(data);
+            if (entry.deflated) {
+                in = new InflaterInputStream(in, inflater, 64 * 1024);
+            }
+            try (InputStream source = in;
+                 OutputStream out = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024), digest)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = source.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            String actual = Integrity.hex(digest.digest());
+            if (!actual.equalsIgnoreCase(entry.sha256) || tmp.length() != entry.length) {
+                throw new IntegrityCheckFailedException("bundled driver " + entry + " in " + file + " is damaged, expected: " + entry.sha256 + ", actual: " + actual);
+            }
+            tmp.setExecutable(true, false);
+            Helper.moveAtomically(tmp, target);
+            Integrity.record(target, entry.sha256);
+            timer.bytes(entry.length).success();
+            return target;
+        } finally {
+            inflater.end();
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        opened.remove(file.getCanonicalPath(), this);
+        channel.close();
+    }
+
+    /**
+     * Rejects a record a corrupt or crafted bundle could use to index past the code tables, read outside the data
+     * section or write outside the target directory.
+     */
+    private void checkRecord(int i, long dataOffset, long size) throws IOException {
+        int base = i * recordSize;
+        int browser = index.get(base) & 0xff;
+        int platform = index.get(base + 1) & 0xff;
+        int versionLength = index.get(base + 4) & 0xff;
+        long offset = index.getLong(base + 16);
+        long storedLength = index.getLong(base + 24);
+        int nameLength = index.get(base + 72) & 0xff;
+        if (browser >= browserCodes.length || platform >= platformCodes.length || !isArchCode(index.get(base + 2) & 0xff)) {
+            throw new IOException("unknown browser, platform or arch code in record " + i + " of driver bundle: " + file);
+        }
+        if (versionLength < 1 || versionLength > 4 || index.getLong(base + 32) < 0) {
+            throw new IOException("invalid version or length in record " + i + " of driver bundle: " + file);
+        }
+        if (offset < dataOffset || storedLength < 0 || offset > size - storedLength) {
+            throw new IOException("record " + i + " points outside driver bundle: " + file);
+        }
+        if (nameLength > maxNameLength) {
+            throw new IOException("driver name too long in record " + i + " of driver bundle: " + file);
+        }
+        byte[] name = new byte[nameLength];
+        for (int j = 0; j < nameLength; j++) {
+            name[j] = index.get(base + 73 + j);
+        }
+        if (!isPlainName(new String(name, StandardCharsets.UTF_8))) {
+            throw new IOException("invalid driver name in record " + i + " of driver bundle: " + file);
+        }
+    }
+
+    private static boolean isPlainName(String name) {
+        return !name.isEmpty() && !".".equals(name) && !"..".equals(name) && name.indexOf('/') < 0 && name.indexOf('\\') < 0
+                && name.indexOf(':') < 0 && name.indexOf('\0') < 0;
+    }
+
+    private static boolean isArchCode(int code) {
+        for (Arch arch : Arch.values()) {
+            if (code(arch) == code) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int lowerBound(long prefix, long versionKey) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long p = prefixAt(middle);
+            if (p < prefix || p == prefix && versionKeyAt(middle) < versionKey) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long prefixAt(int i) {
+        int base = i * recordSize;
+        return ((index.get(base) & 0xffL) << 16) | ((index.get(base + 1) & 0xffL) << 8) | (index.get(base + 2) & 0xffL);
+    }
+
+    private long versionKeyAt(int i) {
+        return index.getLong(i * recordSize + 8);
+    }
+
+    private String versionAt(int i) {
+        int base = i * recordSize;
+        return unpack(index.getLong(base + 8), index.get(base + 4));
+    }
+
+    private Entry entryAt(int i) {
+        int base = i * recordSize;
+        Entry entry = new Entry();
+        entry.type = browserCodes[index.get(base)];
+        entry.platform = platformCodes[index.get(base + 1)];
+        entry.arch = arch(index.get(base + 2) & 0xff);
+        entry.deflated = (index.get(base + 3) & flagDeflated) != 0;
+        entry.version = versionAt(i);
+        entry.offset = index.getLong(base + 16);
+        entry.storedLength = index.getLong(base + 24);
+        entry.length = index.getLong(base + 32);
+        byte[] sha256 = new byte[32];
+        for (int j = 0; j < 32; j++) {
+            sha256[j] = index.get(base + 40 + j);
+        }
+        entry.sha256 = Integrity.hex(sha256);
+        byte[] name = new byte[index.get(base + 72) & 0xff];
+        for (int j = 0; j < name.length; j++) {
+            name[j] = index.get(base + 73 + j);
+        }
+        entry.name = new String(name, StandardCharsets.UTF_8);
+        return entry;
+    }
+
+    private static long prefix(DriverType type, Platform platform, Arch arch) {
+        return ((long) code(browserCodes, type) << 16) | ((long) code(platformCodes, platform) << 8) | code(arch);
+    }
+
+    private static int code(Arch arch) {
+        // 32 and 64 as written by the first bundles, which knew no other arch
+        return arch == Arch.Arm64 ? 0xa4 : Integer.parseInt(arch.getName());
+    }
+
+    private static Arch arch(int code) {
+        for (Arch arch : Arch.values()) {
+            if (code(arch) == code) {
+                return arch;
+            }
+        }
+        throw new IllegalArgumentException("unknown bundle arch code: " + code);
+    }
+
+    private static <T> int code(T[] codes, T value) {
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] == value) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("no bundle code for: " + value);
+    }
+
+    private static long pack(Version version) {
+        if (version.length() > 4) {
+            throw new IllegalArgumentException("a bundled version has at most 4 components: " + version);
+        }
+        long key = 0;
+        for (int i = 0; i < 4; i++) {
+            long component = i < version.length() ? version.get(i) : 0;
+            if (component > 0xffff) {
+                throw new IllegalArgumentException("version component too large for a bundle: " + version);
+            }
+            key = (key << 16) | component;
+        }
+        return key;
+    }
+
+    private static String unpack(long key, int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                builder.append('.');
+            }
+            builder.append((key >>> (48 - 16 * i)) & 0xffff);
+        }
+        return builder.toString();
+    }
+
+    @Getter
+    public static class Entry {
+        private DriverType type;
+        private Platform platform;
+        private Arch arch;
+        private String version;
+        private String name;
+        private String sha256;
+        private long length;
+        private long storedLength;
+        private long offset;
+        private boolean deflated;
+
+        @Override
+        public String toString() {
+            return type + " " + version + " " + platform.name().toLowerCase() + "-" + arch.getName() + " (" + name + ")";
+        }
+    }
+
+    /**
+     * Collects drivers and writes them as a bundle.
+     */
+    public static class Writer {
+        private final boolean deflate;
+        private final List<Source> sources = new ArrayList<>();
+
+        public Writer(boolean deflate) {
+            this.deflate = deflate;
+        }
+
+        public Writer add(DriverType type, Platform platform, Arch arch, String version, File driver) {
+            Source source = new Source();
+            source.prefix = prefix(type, platform, arch);
+            source.parsed = Version.parse(version);
+            source.versionKey = pack(source.parsed);
+            source.driver = driver;
+            if (driver.getName().getBytes(StandardCharsets.UTF_8).length > maxNameLength) {
+                throw new IllegalArgumentException("driver file name too long for a bundle: " + driver.getName());
+            }
+            sources.removeIf(i -> i.prefix == source.prefix && i.versionKey == source.versionKey);
+            sources.add(source);
+            return this;
+        }
+
+        public int size() {
+            return sources.size();
+        }
+
+        public void write(File bundle) throws IOException {
+            sources.sort(Comparator.comparingLong((Source i) -> i.prefix).thenComparingLong(i -> i.versionKey));
+            long dataOffset = headerSize + (long) sources.size() * recordSize;
+            File tmp = new File(bundle.getPath() + "." + UUID.randomUUID() + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long position = dataOffset;
+                ByteBuffer index = ByteBuffer.allocate(sources.size() * recordSize);
+                for (Source source : sources) {
+                    MessageDigest digest = Integrity.sha256();
+                    long stored = writeData(source.driver, out, position, digest);
+                    byte[] name = source.driver.getName().getBytes(StandardCharsets.UTF_8);
+                    int base = index.position();
+                    index.put((byte) (source.prefix >>> 16)).put((byte) (source.prefix >>> 8)).put((byte) source.prefix)
+                            .put((byte) (deflate ? flagDeflated : 0))
+                            .put((byte) source.parsed.length()).put(new byte[3])
+                            .putLong(source.versionKey).putLong(position).putLong(stored).putLong(source.driver.length())
+                            .put(digest.digest()).put((byte) name.length).put(name);
+                    index.position(base + recordSize);
+                    position += stored;
+                }
+                index.flip();
+                ByteBuffer header = ByteBuffer.allocate(headerSize);
+                header.putInt(magic).putInt(format).putInt(sources.size()).putInt(0).putLong(headerSize).putLong(dataOffset).flip();
+                writeFully(out, header, 0);
+                writeFully(out, index, headerSize);
+                out.force(true);
+            } catch (IOException | RuntimeException e) {
+                FileUtils.deleteQuietly(tmp);
+                throw e;
+            }
+            Helper.moveAtomically(tmp, bundle);
+            log.info("wrote {} drivers to bundle: {} ({} bytes)", sources.size(), bundle, bundle.length());
+        }
+
+        private long writeData(File driver, FileChannel out, long position, MessageDigest digest) throws IOException {
+            ChannelOutputStream channelOut = new ChannelOutputStream(out, position);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (InputStream in = new FileInputStream(driver)) {
+                OutputStream target = deflate ? new DeflaterOutputStream(channelOut, deflater, 64 * 1024) : channelOut;
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    target.write(buffer, 0, read);
+                }
+                if (target instanceof DeflaterOutputStream) {
+                    ((DeflaterOutputStream) target).finish();
+                }
+            } finally {
+                deflater.end();
+            }
+            return channelOut.position - position;
+        }
+
+        private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += out.write(buffer, position);
+            }
+        }
+
+        private static class Source {
+            private long prefix;
+            private Version parsed;
+            private long versionKey;
+            private File driver;
+        }
+    }
+
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int length = Math.min(len, buffer.remaining());
+            buffer.get(b, off, length);
+            return length;
+        }
+    }
+
+    private static class ChannelOutputStream extends OutputStream {
+        private final FileChannel channel;
+        private long position;
+
+        private ChannelOutputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.driver.manage;
+
+import io.driver.manage.enums.Arch;
+import io.driver.manage.enums.DriverType;
+import io.driver.manage.enums.Platform;
+import io.driver.utils.Config;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide memo of resolved drivers keyed by (driver type, platform, arch, browser version).
+ * The first caller for a key probes and configures, concurrent callers wait on the same future,
+ * and later callers get the cached driver path back without any I/O. The browser version is
+ * re-checked after {@code registry.browserTtlSeconds} (a stat of the browser while its fingerprint
+ * holds), so a browser updated under a long-lived JVM resolves its new driver. Resolving and
+ * clearing a browser's cache are serialized per driver type.
+ */
+@Slf4j
+public class DriverRegistry {
+    private static final ConcurrentMap<DriverType, Memo> browserVersions = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Key, Memo> driverPaths = new ConcurrentHashMap<>();
+    private static final Map<DriverType, Object> locks = new EnumMap<>(DriverType.class);
+
+    static {
+        for (DriverType type : DriverType.values()) {
+            locks.put(type, new Object());
+        }
+    }
+
+    private DriverRegistry() {
+    }
+
+    public static String resolve(DriverType type, Supplier<? extends AutoWebdriver> factory) {
+        Manager manager = new Manager(factory);
+        long browserTtl = TimeUnit.SECONDS.toMillis(Config.getInt("registry.browserTtlSeconds", 60));
+        String browserVersion = memoize(browserVersions, type, browserTtl, i -> true,
+                () -> manager.get().getLocalDriverVersion(type));
+        Key key = new Key(type, AbstractDriverProperties.detectPlatform(), AbstractDriverProperties.detectArch(), browserVersion);
+        String driverPath = memoize(driverPaths, key, Long.MAX_VALUE, i -> new File(i).isFile(), () -> {
+            synchronized (locks.get(type)) {
+                manager.get().configure();
+                return System.getProperty(property(type));
+            }
+        });
+        if (!driverPath.equals(System.getProperty(property(type)))) {
+            setDriver(type, driverPath);
+        }
+        return driverPath;
+    }
+
+    /**
+     * Clears the browser's driver cache and resolves it again. The clean up holds the browser's lock, so it
+     * never races a configure; the lock is released before resolving, because a resolution another thread
+     * memoized meanwhile completes under that same lock and this call may have to wait for it.
+     */
+    public static String refresh(DriverType type, Supplier<? extends AutoWebdriver> factory) {
+        synchronized (locks.get(type)) {
+            invalidate(type);
+            factory.get().clearCache();
+        }
+        return resolve(type, factory);
+    }
+
+    public static void invalidate(DriverType type) {
+        browserVersions.remove(type);
+        driverPaths.keySet().removeIf(key -> key.type.equals(type));
+    }
+
+    public static void invalidateAll() {
+        browserVersions.clear();
+        driverPaths.clear();
+    }
+
+    private static <K> String memoize(ConcurrentMap<K, Memo> cache, K key, long ttlMillis, Predicate<String> valid, Supplier<String> loader) {
+        Memo memo = cache.get(key);
+        if (memo != null && memo.future.isDone() && !memo.future.isCompletedExceptionally()
+                && (System.currentTimeMillis() - memo.createdAt >= ttlMillis || !valid.test(memo.future.join()))) {
+            cache.remove(key, memo);
+            memo = null;
+        }
+        if (memo == null) {
+            Memo created = new Memo();
+            memo = cache.putIfAbsent(key, created);
+            if (memo == null) {
+                memo = created;
+                try {
+                    String value = loader.get();
+                    if (Objects.isNull(value)) {
+                        throw new IllegalStateException("unable to resolve: " + key);
+                    }
+                    created.future.complete(value);
+                } catch (RuntimeException e) {
+                    cache.remove(key, created);
+                    created.future.completeExceptionally(e);
+                }
+            }
+        }
+        try {
+            return memo.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    static String property(DriverType type) {
+        switch (type) {
+            case Chrome:
+                return SetDriver.chrome;
+            case Firefox:
+                return SetDriver.firefox;
+            case Edge:
+                return SetDriver.edge;
+            default:
+                throw new IllegalArgumentException("no such type: " + type);
+        }
+    }
+
+    private static void setDriver(DriverType type, String driverPath) {
+        switch (type) {
+            case Chrome:
+                SetDriver.setChrome(driverPath);
+                break;
+            case Firefox:
+                SetDriver.setFireFox(driverPath);
+                break;
+            case Edge:
+                SetDriver.setEdge(driverPath);
+                break;
+            default:
+                throw new IllegalArgumentException("no such type: " + type);
+        }
+    }
+
+    private static class Manager {
+        private final Supplier<? extends AutoWebdriver> factory;
+        private AutoWebdriver instance;
+
+        private Manager(Supplier<? extends AutoWebdriver> factory) {
+            this.factory = factory;
+        }
+
+        private AutoWebdriver get() {
+            if (instance == null) {
+                instance = factory.get();
+            }
+            return instance;
+        }
+    }
+
+    private static final class Memo {
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private final long createdAt = System.currentTimeMillis();
+    }
+
+    @ToString
+    @EqualsAndHashCode
+    private static final class Key {
+        private final DriverType type;
+        private final Platform platform;
+        private final Arch arch;
+        private final String browserVersion;
+
+        private Key(DriverType type, Platform platform, Arch arch, String browserVersion) {
+            this.type = type;
+            this.platform = platform;
+            this.arch = arch;
+            this.browserVersion = browserVersion;
+        }
+    }
+}
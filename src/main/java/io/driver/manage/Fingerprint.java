@@ -0,0 +1,104 @@
+package io.driver.manage;
+
+import com.google.gson.Gson;
+import io.driver.manage.enums.Arch;
+import io.driver.utils.Helper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Persisted record of the last successful resolution: the browser executable (with its size and mtime), the
+ * detected version, the arch and configuration it was resolved for, and the driver it resolved to (again with its
+ * size and mtime). While the executable, arch and configuration are unchanged the browser has not been updated, so
+ * neither probing nor matching has to run again. Without a known executable the file the version was read from
+ * stands in for it. A driver replaced since then, even by one of the same size, falls back to a full lookup.
+ */
+@Slf4j
+class Fingerprint {
+    private static final Gson gson = new Gson();
+    private String browser;
+    private long browserLength;
+    private long browserLastModified;
+    private String source;
+    private String browserVersion;
+    private String arch;
+    private int config;
+    private String driverPath;
+    private long driverLength;
+    private long driverLastModified;
+
+    static Fingerprint of(VersionProbe.Result probe, File executable, Arch arch, int config, File driver) {
+        if (Objects.isNull(probe)) {
+            return null;
+        }
+        File browser = Objects.isNull(executable) ? probe.getSource() : executable;
+        if (Objects.isNull(browser) || !browser.isFile()) {
+            return null;
+        }
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.browser = browser.getAbsolutePath();
+        fingerprint.browserLength = browser.length();
+        fingerprint.browserLastModified = browser.lastModified();
+        fingerprint.source = Objects.isNull(probe.getSource()) ? null : probe.getSource().getAbsolutePath();
+        fingerprint.browserVersion = probe.getVersion();
+        fingerprint.arch = arch.getName();
+        fingerprint.config = config;
+        fingerprint.driverPath = driver.getAbsolutePath();
+        fingerprint.driverLength = driver.length();
+        fingerprint.driverLastModified = driver.lastModified();
+        return fingerprint;
+    }
+
+    static Fingerprint read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return gson.fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8), Fingerprint.class);
+        } catch (IOException | RuntimeException e) {
+            log.debug("ignoring unreadable fingerprint {}: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    void write(File file) {
+        File tmp = new File(file.getPath() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            FileUtils.writeStringToFile(tmp, gson.toJson(this), StandardCharsets.UTF_8);
+            Helper.moveAtomically(tmp, file);
+        } catch (IOException e) {
+            log.warn("unable to write fingerprint: {}", e.toString());
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+
+    boolean browserUnchanged(File executable, Arch arch, int config) {
+        if (Objects.isNull(browser) || !arch.getName().equals(this.arch) || config != this.config) {
+            return false;
+        }
+        if (!Objects.isNull(executable) && !executable.getAbsolutePath().equals(browser)) {
+            return false;
+        }
+        File file = new File(browser);
+        return file.lastModified() == browserLastModified && file.length() == browserLength;
+    }
+
+    boolean driverPresent() {
+        File driver = new File(driverPath);
+        return driver.isFile() && driver.length() == driverLength && driver.lastModified() == driverLastModified;
+    }
+
+    VersionProbe.Result toProbeResult() {
+        return new VersionProbe.Result(browserVersion, Objects.isNull(source) ? null : new File(source));
+    }
+
+    File getDriver() {
+        return new File(driverPath);
+    }
+}
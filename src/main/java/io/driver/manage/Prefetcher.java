@@ -0,0 +1,99 @@
+package io.driver.manage;
+
+import io.driver.manage.enums.DriverType;
+import io.driver.utils.Config;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the shared driver cache ahead of test runs: for every installed browser the matching driver and the one
+ * for the next major version (once it is published) are provisioned, so the run after an overnight browser update
+ * still finds its driver locally. Run once, or with {@code --daemon} to re-check every
+ * {@code prefetch.intervalMinutes}:
+ * <pre>
+ * java -cp auto-webdriver.jar io.driver.manage.Prefetcher [--daemon] [--interval minutes] [chrome|firefox|edge ...]
+ * </pre>
+ */
+@Slf4j
+public class Prefetcher {
+    private final List<DriverType> types;
+    private final Map<DriverType, String> lastBrowserVersions = new EnumMap<>(DriverType.class);
+
+    public Prefetcher(Collection<DriverType> types) {
+        this.types = new ArrayList<>(types);
+    }
+
+    public static void main(String[] args) {
+        boolean daemon = false;
+        long interval = Config.getInt("prefetch.intervalMinutes", 30);
+        Set<DriverType> types = EnumSet.noneOf(DriverType.class);
+        for (int i = 0; i < args.length; i++) {
+            if ("--daemon".equals(args[i])) {
+                daemon = true;
+            } else if ("--interval".equals(args[i]) && i + 1 < args.length) {
+                interval = Long.parseLong(args[++i]);
+            } else {
+                types.add(parseType(args[i]));
+            }
+        }
+        if (types.isEmpty()) {
+            for (String name : Config.getList("prefetch.browsers")) {
+                types.add(parseType(name));
+            }
+        }
+        Prefetcher prefetcher = new Prefetcher(types);
+        if (daemon) {
+            prefetcher.schedule(interval);
+        } else {
+            prefetcher.run();
+        }
+    }
+
+    private static DriverType parseType(String name) {
+        for (DriverType type : DriverType.values()) {
+            if (type.name().equalsIgnoreCase(name.trim())) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("no such browser: " + name + ", expected one of: " + Arrays.toString(DriverType.values()));
+    }
+
+    /**
+     * Prefetches every browser once; a browser that is not installed or whose listing is unreachable is skipped.
+     */
+    public Map<DriverType, List<File>> run() {
+        Map<DriverType, List<File>> prefetched = new EnumMap<>(DriverType.class);
+        for (DriverType type : types) {
+            try {
+                AutoWebdriver browser = AutoWebdriver.of(type);
+                String browserVersion = browser.getLocalDriverVersion(type);
+                String previous = lastBrowserVersions.put(type, browserVersion);
+                if (!Objects.isNull(previous) && !previous.equals(browserVersion)) {
+                    log.info("{} browser updated from {} to {}", type, previous, browserVersion);
+                    DriverRegistry.invalidate(type);
+                }
+                List<File> drivers = browser.prefetch(type);
+                log.info("{} drivers ready: {}", type, drivers);
+                prefetched.put(type, drivers);
+            } catch (RuntimeException e) {
+                log.warn("unable to prefetch {} driver: {}", type, e.toString());
+            }
+        }
+        return prefetched;
+    }
+
+    /**
+     * Runs {@link #run()} now and then every {@code intervalMinutes} on a non-daemon thread, which keeps the JVM alive.
+     */
+    public ScheduledExecutorService schedule(long intervalMinutes) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "driver-prefetch"));
+        scheduler.scheduleWithFixedDelay(this::run, 0, Math.max(1, intervalMinutes), TimeUnit.MINUTES);
+        log.info("prefetching {} drivers every {} minutes", types, intervalMinutes);
+        return scheduler;
+    }
+}
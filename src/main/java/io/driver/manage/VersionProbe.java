@@ -0,0 +1,179 @@
+package io.driver.manage;
+
+import io.driver.utils.AsyncExecutor;
+import io.driver.utils.Config;
+import io.driver.utils.ProcessExecutor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Detects the installed browser version. Metadata sources are tried first without creating a process:
+ * {@code file|<path>|<regex>} reads the version out of a text file (application.ini, Info.plist, dpkg status)
+ * and {@code dir|<path>} takes the highest version-named sub directory (the Windows install layout).
+ * Results are cached by path, size and mtime. Only when no source matches are the configured commands
+ * executed, all at once through {@link ProcessExecutor} and bounded by {@code probe.timeoutSeconds}.
+ */
+@Slf4j
+public class VersionProbe {
+    private static final Pattern versionPattern = Pattern.compile("\\d+(\\.\\d+)+");
+    private static final Pattern envPattern = Pattern.compile("%([^%]+)%");
+    private static final ConcurrentMap<String, CachedSource> sourceCache = new ConcurrentHashMap<>();
+
+    private VersionProbe() {
+    }
+
+    @Getter
+    public static class Result {
+        private final String version;
+        private final File source;
+
+        Result(String version, File source) {
+            this.version = version;
+            this.source = source;
+        }
+    }
+
+    public static Result probe(List<String> sources, List<String> commands) {
+        for (String source : sources) {
+            Result result = readSource(source);
+            if (result != null) {
+                log.debug("browser version {} read from: {}", result.version, result.source);
+                return result;
+            }
+        }
+        String version = execute(commands);
+        return "".equals(version) ? null : new Result(version, null);
+    }
+
+    private static Result readSource(String source) {
+        String[] parts = source.split("\\|", 3);
+        if (parts.length < 2) {
+            log.warn("ignoring malformed probe source: {}", source);
+            return null;
+        }
+        File file = new File(expand(parts[1]));
+        if (!file.exists()) {
+            return null;
+        }
+        CachedSource cached = sourceCache.get(source);
+        if (cached != null && cached.matches(file)) {
+            return new Result(cached.version, file);
+        }
+        String version;
+        switch (parts[0]) {
+            case "file":
+                version = parts.length == 3 ? readFile(file, Pattern.compile(parts[2])) : "";
+                break;
+            case "dir":
+                version = readDirectory(file);
+                break;
+            default:
+                log.warn("unknown probe source type: {}", parts[0]);
+                return null;
+        }
+        if ("".equals(version)) {
+            return null;
+        }
+        sourceCache.put(source, new CachedSource(file, version));
+        return new Result(version, file);
+    }
+
+    private static String readFile(File file, Pattern pattern) {
+        try {
+            Matcher matcher = pattern.matcher(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+            if (matcher.find()) {
+                return matcher.groupCount() > 0 ? matcher.group(1) : matcher.group();
+            }
+        } catch (IOException e) {
+            log.debug("unable to read probe source {}: {}", file, e.toString());
+        }
+        return "";
+    }
+
+    private static String readDirectory(File directory) {
+        String[] names = directory.list((dir, name) -> versionPattern.matcher(name).matches() && new File(dir, name).isDirectory());
+        if (names == null || names.length == 0) {
+            return "";
+        }
+        return Arrays.stream(names).max(VersionProbe::compare).orElse("");
+    }
+
+    private static int compare(String left, String right) {
+        String[] a = left.split("\\.");
+        String[] b = right.split("\\.");
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int result = Long.compare(Long.parseLong(a[i]), Long.parseLong(b[i]));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    static String expand(String path) {
+        Matcher matcher = envPattern.matcher(path);
+        StringBuffer buffer = new StringBuffer();
+        while (matcher.find()) {
+            String value = System.getenv(matcher.group(1));
+            matcher.appendReplacement(buffer, Matcher.quoteReplacement(value == null ? matcher.group() : value));
+        }
+        matcher.appendTail(buffer);
+        return buffer.toString();
+    }
+
+    private static String execute(List<String> commands) {
+        if (commands.isEmpty()) {
+            return "";
+        }
+        long timeout = TimeUnit.SECONDS.toMillis(Config.getInt("probe.timeoutSeconds", 10));
+        List<CompletableFuture<String>> futures = commands.stream()
+                .map(command -> CompletableFuture.supplyAsync(() -> executeCommand(command, timeout), AsyncExecutor.io()))
+                .collect(Collectors.toList());
+        for (CompletableFuture<String> future : futures) {
+            try {
+                String version = future.get(timeout, TimeUnit.MILLISECONDS);
+                if (!"".equals(version)) {
+                    return version;
+                }
+            } catch (ExecutionException | TimeoutException e) {
+                log.debug("browser version command failed: {}", e.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "";
+            }
+        }
+        return "";
+    }
+
+    private static String executeCommand(String command, long timeoutMillis) {
+        ProcessExecutor.Result result = ProcessExecutor.execute(command, timeoutMillis);
+        String version = AbstractDriverProperties.parseBrowserVersion(result.getStdout());
+        return "".equals(version) ? AbstractDriverProperties.parseBrowserVersion(result.getStderr()) : version;
+    }
+
+    private static class CachedSource {
+        private final long length;
+        private final long lastModified;
+        private final String version;
+
+        private CachedSource(File file, String version) {
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.version = version;
+        }
+
+        private boolean matches(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+}
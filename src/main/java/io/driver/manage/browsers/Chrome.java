@@ -3,30 +3,26 @@ package io.driver.manage.browsers;
 import com.jayway.jsonpath.JsonPath;
 import io.driver.exception.FileNotFoundException;
 import io.driver.exception.UnableToGetLocalBroserVersionException;
-import io.driver.manage.AbstractDriverProperties;
 import io.driver.manage.AutoWebdriver;
 import io.driver.manage.SetDriver;
+import io.driver.manage.VersionProbe;
 import io.driver.manage.enums.DriverType;
-import io.driver.manage.enums.Platform;
+import io.driver.utils.BucketListingParser;
 import io.driver.utils.Helper;
-import io.github.jiawade.tool.utils.HttpRequests;
+import io.driver.utils.Metrics;
+import io.driver.utils.MirrorSelector;
+import io.driver.utils.VersionCatalog;
+import io.driver.utils.VersionIndex;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import java.io.*;
 import java.net.URL;
 import java.util.*;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 
 @Slf4j
 public class Chrome extends AutoWebdriver {
-    private static final int arch = 32;
-
     public Chrome() {
         buildChromeProp();
     }
@@ -39,39 +35,43 @@ public class Chrome extends AutoWebdriver {
 
     @Override
     public void configure() {
+        try (Metrics.Timer timer = Metrics.start(Metrics.Phase.CONFIGURE, "chrome")) {
+            configureDriver();
+            timer.success();
+        }
+    }
+
+    private void configureDriver() {
+        File fingerprintedDriver = getFingerprintedDriver(DriverType.Chrome);
+        if (fingerprintedDriver.exists()) {
+            log.info("chrome browser unchanged since last run, re-use driver: {}", fingerprintedDriver.getAbsolutePath());
+            SetDriver.setChrome(fingerprintedDriver.getAbsolutePath());
+            return;
+        }
         File localDriverFile = getDriverFile(DriverType.Chrome);
         if (localDriverFile.exists()) {
             log.info("find local chrome driver, re-use it: {}", localDriverFile.getAbsolutePath());
             SetDriver.setChrome(localDriverFile.getAbsolutePath());
+            recordFingerprint(DriverType.Chrome, localDriverFile);
             return;
         }
-        if (localDriverFile.exists()) {
-            log.info("find local chrome driver, re-use it: {}", localDriverFile.getAbsolutePath());
-            SetDriver.setChrome(localDriverFile.getAbsolutePath());
+        File bundledDriver = resolveFromBundle(DriverType.Chrome);
+        if (bundledDriver.exists()) {
+            log.info("use chrome driver from bundle: {}", bundledDriver.getAbsolutePath());
+            SetDriver.setChrome(bundledDriver.getAbsolutePath());
+            recordFingerprint(DriverType.Chrome, bundledDriver);
             return;
         }
         String version = findBestMatchLocalVersion(DriverType.Chrome);
-        File driverFile = downloadDriver(version);
-        Helper.unzip(driverFile, driverFile.getParent());
-
-        File driver = getDownloadedDriver(driverFile.getParentFile());
-        if (!driver.exists()) {
-            throw new FileNotFoundException("unable to find driver in directory: " + driver.getAbsolutePath());
-        }
-        if (!currentPlatform.equals(Platform.Windows)) {
-            Helper.exeRuntimeCommand("chmod +x " + driver.getAbsolutePath());
-        }
+        File driver = provisionDriver(DriverType.Chrome, version);
         SetDriver.setChrome(driver.getAbsolutePath());
+        recordFingerprint(DriverType.Chrome, driver);
     }
 
     @Override
     public String findBestMatchLocalVersion(DriverType type) {
         String localVersion = getLocalDriverVersion(type);
-        List<String> versions = getChromeVersion();
-        if (versions.isEmpty()) {
-            log.info("using mirror{} to download chrome driver.", chromeMirrorDownloadUrl);
-            versions = getChromeVersionInMirror();
-        }
+        List<String> versions = listDriverVersions();
         String version = Helper.findBestMatchVersion(localVersion, versions);
         if ("".equals(version)) {
             throw new IllegalArgumentException("local version chrome version is: " + localVersion + ", unable to find best match version of the list: " + versions);
@@ -80,23 +80,30 @@ public class Chrome extends AutoWebdriver {
     }
 
     @Override
-    public File downloadDriver(String driverVersion) {
-        if (!Pattern.matches(browserVersionPattern, driverVersion)) {
+    protected String findDriverVersion(DriverType type, long browserMajor) {
+        return VersionCatalog.of(listDriverVersions()).newest(browserMajor);
+    }
+
+    @Override
+    protected String getDownloadUrl(String driverVersion) {
+        if (!browserVersionRegex.matcher(driverVersion).matches()) {
             throw new IllegalArgumentException("the driver version: " + driverVersion + " not match the version regex: " + browserVersionPattern);
         }
-        String url;
-        if (currentPlatform.equals(Platform.Windows)) {
-            url = String.format(chromeDownloadUrl, driverVersion, currentPlatform.getName(), arch);
-        } else {
-            url = String.format(chromeDownloadUrl, driverVersion, currentPlatform.getName(), super.arch);
-        }
+        return resolveDownloadUrl(DriverType.Chrome, driverVersion, name -> chromeDownloadPatterns.stream()
+                .map(pattern -> String.format(pattern, driverVersion, name, ""))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public File downloadDriver(String driverVersion) {
+        String url = getDownloadUrl(driverVersion);
         String path = getDriverSavePath(DriverType.Chrome) + File.separator + driverVersion;
         File file = new File(path);
         if (!file.exists()) {
             file.mkdirs();
         }
         File driverFile = new File(path + File.separator + new File(url).getName());
-        Helper.downloadFile(url, driverFile);
+        Helper.downloadFile(url, driverFile, getPinnedDigest(DriverType.Chrome, driverVersion, url));
         if (!driverFile.exists()) {
             throw new FileNotFoundException("failed to download chrome driver");
         }
@@ -105,26 +112,40 @@ public class Chrome extends AutoWebdriver {
 
     @Override
     public String getLocalDriverVersion(DriverType type) {
-        List<String> commands = driverPlatformCommands.get(type).get(currentPlatform);
-        List<String> versions = commands.stream()
-                .map(Helper::exeRuntimeCommand)
-                .map(AbstractDriverProperties::parseBrowserVersion)
-                .distinct()
-                .filter(i -> !"".equals(i))
-                .collect(Collectors.toList());
-        if (versions.isEmpty()) {
+        VersionProbe.Result result = probeBrowser(type);
+        if (Objects.isNull(result)) {
             throw new UnableToGetLocalBroserVersionException("unable to find chrome browser version, may not install google chrome");
         }
-        return versions.get(0);
+        return result.getVersion();
     }
 
-    private List<String> getChromeVersion() {
+    private List<String> listDriverVersions() {
+        Map<String, String> kinds = new LinkedHashMap<>();
+        for (String listing : chromeListings) {
+            String[] parts = listing.split("\\|", 2);
+            if (parts.length == 2) {
+                kinds.put(parts[1], parts[0]);
+            } else {
+                log.warn("ignoring malformed chrome listing, expected bucket|<url> or npm|<url>: {}", listing);
+            }
+        }
+        List<String> versions = new ArrayList<>();
+        for (String source : MirrorSelector.rank(new ArrayList<>(kinds.keySet()))) {
+            versions = "npm".equals(kinds.get(source)) ? getChromeVersionInMirror(source) : getChromeVersion(source);
+            if (!versions.isEmpty()) {
+                break;
+            }
+            log.info("no chrome driver versions listed by: {}", source);
+        }
+        return versions;
+    }
+
+    private List<String> getChromeVersion(String listingUrl) {
         List<String> versions = new ArrayList<>();
         try {
-            Document document = Jsoup.parse(new URL(chromeBaseUrl), 10000);
-            Elements link = document.selectXpath("//Key");
-            versions = link.stream().map(Element::text)
-                    .filter(i -> i.endsWith(".zip"))
+            List<String> keys = VersionIndex.load(getVersionIndexFile(DriverType.Chrome, getIndexName("google", listingUrl)), listingUrl, versionListType, (in, url) ->
+                    BucketListingParser.list(in, url, "Key", i -> i.endsWith(".zip")));
+            versions = keys.stream()
                     .filter(j -> j.contains(currentPlatform.getName()))
                     .map(k -> k.split("/")[0])
                     .collect(Collectors.toList());
@@ -135,18 +156,27 @@ public class Chrome extends AutoWebdriver {
     }
 
 
-    private List<String> getChromeVersionInMirror() {
-        List<String> versions = new ArrayList<>();
-        HttpRequests httpRequest = new HttpRequests();
-        httpRequest.get(chromeMirrorUrl, new HashMap<>());
-        List<String> versionRaw =  ((List<String>) JsonPath.parse(httpRequest.getText()).read("$..name")).stream().filter(i -> !Objects.isNull(i)).collect(Collectors.toList());
-        if (versionRaw.isEmpty()) {
-            return versions;
+    private List<String> getChromeVersionInMirror(String listingUrl) {
+        List<String> versionRaw = new ArrayList<>();
+        try {
+            versionRaw = VersionIndex.load(getVersionIndexFile(DriverType.Chrome, getIndexName("mirror", listingUrl)), listingUrl, versionListType, (in, url) ->
+                    ((List<String>) JsonPath.parse(in).read("$..name")).stream()
+                            .filter(i -> !Objects.isNull(i))
+                            .collect(Collectors.toList()));
+        } catch (IOException e) {
+            log.error(e.toString(), e);
         }
         return versionRaw.stream()
                 .map(i -> i.replace("/", ""))
-                .filter(i -> Pattern.matches(browserVersionPattern, i))
+                .filter(i -> browserVersionRegex.matcher(i).matches())
                 .collect(Collectors.toList());
     }
 
+    /**
+     * The default listings keep their index names, an added mirror gets its own index file.
+     */
+    private String getIndexName(String name, String listingUrl) {
+        return listingUrl.equals(chromeBaseUrl) || listingUrl.equals(chromeMirrorUrl) ? name : name + "-" + Integer.toHexString(listingUrl.hashCode());
+    }
+
 }
@@ -2,25 +2,21 @@ package io.driver.manage.browsers;
 
 import io.driver.exception.FileNotFoundException;
 import io.driver.exception.UnableToGetLocalBroserVersionException;
-import io.driver.manage.AbstractDriverProperties;
 import io.driver.manage.AutoWebdriver;
 import io.driver.manage.SetDriver;
+import io.driver.manage.VersionProbe;
 import io.driver.manage.enums.DriverType;
-import io.driver.manage.enums.Platform;
+import io.driver.utils.BucketListingParser;
 import io.driver.utils.Helper;
-import io.github.jiawade.tool.utils.HttpRequests;
+import io.driver.utils.Metrics;
+import io.driver.utils.VersionCatalog;
+import io.driver.utils.VersionIndex;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 
@@ -39,24 +35,37 @@ public class Edge extends AutoWebdriver {
 
     @Override
     public void configure() {
+        try (Metrics.Timer timer = Metrics.start(Metrics.Phase.CONFIGURE, "edge")) {
+            configureDriver();
+            timer.success();
+        }
+    }
+
+    private void configureDriver() {
+        File fingerprintedDriver = getFingerprintedDriver(DriverType.Edge);
+        if (fingerprintedDriver.exists()) {
+            log.info("edge browser unchanged since last run, re-use driver: {}", fingerprintedDriver.getAbsolutePath());
+            SetDriver.setEdge(fingerprintedDriver.getAbsolutePath());
+            return;
+        }
         File localDriverFile = getDriverFile(DriverType.Edge);
         if (localDriverFile.exists()) {
             log.info("find local edge driver, re-use it: {}", localDriverFile.getAbsolutePath());
             SetDriver.setEdge(localDriverFile.getAbsolutePath());
+            recordFingerprint(DriverType.Edge, localDriverFile);
             return;
         }
-        String version = findBestMatchLocalVersion(DriverType.Edge);
-        File driverFile = downloadDriver(version);
-        Helper.unzip(driverFile, driverFile.getParent());
-
-        File driver = getDownloadedDriver(driverFile.getParentFile());
-        if (!driver.exists()) {
-            throw new FileNotFoundException("unable to find driver in directory: " + driver.getAbsolutePath());
-        }
-        if (!currentPlatform.equals(Platform.Windows)) {
-            Helper.exeRuntimeCommand("chmod +x " + driver.getAbsolutePath());
+        File bundledDriver = resolveFromBundle(DriverType.Edge);
+        if (bundledDriver.exists()) {
+            log.info("use edge driver from bundle: {}", bundledDriver.getAbsolutePath());
+            SetDriver.setEdge(bundledDriver.getAbsolutePath());
+            recordFingerprint(DriverType.Edge, bundledDriver);
+            return;
         }
+        String version = findBestMatchLocalVersion(DriverType.Edge);
+        File driver = provisionDriver(DriverType.Edge, version);
         SetDriver.setEdge(driver.getAbsolutePath());
+        recordFingerprint(DriverType.Edge, driver);
     }
 
     @Override
@@ -71,23 +80,30 @@ public class Edge extends AutoWebdriver {
     }
 
     @Override
-    protected File downloadDriver(String driverVersion) {
-        if (!Pattern.matches(browserVersionPattern, driverVersion)) {
+    protected String findDriverVersion(DriverType type, long browserMajor) {
+        return VersionCatalog.of(getEdgeVersion()).newest(browserMajor);
+    }
+
+    @Override
+    protected String getDownloadUrl(String driverVersion) {
+        if (!browserVersionRegex.matcher(driverVersion).matches()) {
             throw new IllegalArgumentException("the driver version: " + driverVersion + " not match the version regex: " + browserVersionPattern);
         }
-        String url;
-        if (currentPlatform.equals(Platform.Windows)) {
-            url = String.format(edgeDownloadUrl, driverVersion, currentPlatform.getName(), arch);
-        } else {
-            url = String.format(edgeDownloadUrl, driverVersion, currentPlatform.getName(), arch);
-        }
+        return resolveDownloadUrl(DriverType.Edge, driverVersion, name -> edgeDownloadPatterns.stream()
+                .map(pattern -> String.format(pattern, driverVersion, name, ""))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    protected File downloadDriver(String driverVersion) {
+        String url = getDownloadUrl(driverVersion);
         String path = getDriverSavePath(DriverType.Edge) + File.separator + driverVersion;
         File file = new File(path);
         if (!file.exists()) {
             file.mkdirs();
         }
         File driverFile = new File(path + File.separator + new File(url).getName());
-        Helper.downloadFile(url, driverFile);
+        Helper.downloadFile(url, driverFile, getPinnedDigest(DriverType.Edge, driverVersion, url));
         if (!driverFile.exists()) {
             throw new FileNotFoundException("failed to download chrome driver");
         }
@@ -96,31 +112,19 @@ public class Edge extends AutoWebdriver {
 
     @Override
     public String getLocalDriverVersion(DriverType type) {
-        List<String> commands = driverPlatformCommands.get(type).get(currentPlatform);
-        List<String> versions = commands.stream()
-                .map(Helper::exeRuntimeCommand)
-                .map(AbstractDriverProperties::parseBrowserVersion)
-                .distinct()
-                .filter(i -> !"".equals(i))
-                .collect(Collectors.toList());
-        if (versions.isEmpty()) {
+        VersionProbe.Result result = probeBrowser(type);
+        if (Objects.isNull(result)) {
             throw new UnableToGetLocalBroserVersionException("unable to find chrome browser version, may not install google chrome");
         }
-        return versions.get(0);
+        return result.getVersion();
     }
 
     private List<String> getEdgeVersion() {
-        HttpRequests httpRequest = new HttpRequests();
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Host", "<calculated when request is sent>");
-        headers.put("Accept-Encoding", "gzip, deflate, br");
-        httpRequest.get(edgeBaseUrl, headers);
         List<String> versions = new ArrayList<>();
         try {
-            Document document = Jsoup.parse(httpRequest.getText());
-            Elements link = document.selectXpath("//name");
-            versions = link.stream().map(Element::text)
-                    .filter(i -> i.endsWith(".zip"))
+            List<String> names = VersionIndex.load(getVersionIndexFile(DriverType.Edge, "edge"), edgeBaseUrl, versionListType, (in, url) ->
+                    BucketListingParser.list(in, url, "Name", i -> i.endsWith(".zip")));
+            versions = names.stream()
                     .filter(j -> j.contains(currentPlatform.getName()))
                     .map(k -> k.split("/")[0])
                     .collect(Collectors.toList());
@@ -2,13 +2,11 @@ package io.driver.manage.browsers;
 
 import io.driver.exception.FileNotFoundException;
 import io.driver.exception.UnableToGetLocalBroserVersionException;
-import io.driver.manage.AbstractDriverProperties;
 import io.driver.manage.AutoWebdriver;
 import io.driver.manage.SetDriver;
+import io.driver.manage.VersionProbe;
 import io.driver.manage.enums.DriverType;
-import io.driver.manage.enums.Platform;
 import io.driver.utils.*;
-import io.github.jiawade.tool.utils.HttpRequests;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -16,8 +14,8 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -36,69 +34,72 @@ public class Firefox extends AutoWebdriver {
 
     @Override
     public void configure() {
+        try (Metrics.Timer timer = Metrics.start(Metrics.Phase.CONFIGURE, "firefox")) {
+            configureDriver();
+            timer.success();
+        }
+    }
+
+    private void configureDriver() {
+        File fingerprintedDriver = getFingerprintedDriver(DriverType.Firefox);
+        if (fingerprintedDriver.exists()) {
+            log.info("firefox browser unchanged since last run, re-use driver: {}", fingerprintedDriver.getAbsolutePath());
+            SetDriver.setFireFox(fingerprintedDriver.getAbsolutePath());
+            return;
+        }
         File localDriverFile = getDriverFile(DriverType.Firefox);
         if (localDriverFile.exists()) {
             log.info("find local firefox driver, re-use it: {}", localDriverFile.getAbsolutePath());
             SetDriver.setFireFox(localDriverFile.getAbsolutePath());
+            recordFingerprint(DriverType.Firefox, localDriverFile);
             return;
         }
-        String version = findBestMatchLocalVersion(DriverType.Firefox);
-        File driverFile = downloadDriver(version);
-        Helper.unzip(driverFile, driverFile.getParent());
-
-        File driver = getDownloadedDriver(driverFile.getParentFile());
-        if (!driver.exists()) {
-            throw new FileNotFoundException("unable to find driver in directory: " + driver.getAbsolutePath());
-        }
-        if (!currentPlatform.equals(Platform.Windows)) {
-            Helper.exeRuntimeCommand("chmod +x " + driver.getAbsolutePath());
+        File bundledDriver = resolveFromBundle(DriverType.Firefox);
+        if (bundledDriver.exists()) {
+            log.info("use firefox driver from bundle: {}", bundledDriver.getAbsolutePath());
+            SetDriver.setFireFox(bundledDriver.getAbsolutePath());
+            recordFingerprint(DriverType.Firefox, bundledDriver);
+            return;
         }
+        String version = findBestMatchLocalVersion(DriverType.Firefox);
+        File driver = provisionDriver(DriverType.Firefox, version);
         SetDriver.setFireFox(driver.getAbsolutePath());
+        recordFingerprint(DriverType.Firefox, driver);
     }
 
     @Override
     protected String findBestMatchLocalVersion(DriverType type) {
         String localVersion = getLocalDriverVersion(type);
-        Map<String, List<Integer>> versions = fetchNewVersionMapping();
-        if (!versions.isEmpty()) {
-            return Helper.findBestMatchVersion(localVersion, versions);
+        VersionRangeIndex versions = fetchNewVersionMapping();
+        return Helper.findBestMatchVersion(localVersion, versions.isEmpty() ? bundledGeckoDriverMapping : versions);
+    }
 
-        } else {
-            return Helper.findBestMatchVersion(localVersion, localFireFoxDriverMapping);
-        }
+    @Override
+    protected String findDriverVersion(DriverType type, long browserMajor) {
+        VersionRangeIndex versions = fetchNewVersionMapping();
+        return (versions.isEmpty() ? bundledGeckoDriverMapping : versions).newestFor(browserMajor);
     }
 
     @Override
-    protected File downloadDriver(String driverVersion) {
-        if (!Pattern.matches(browserVersionPattern, driverVersion)) {
+    protected String getDownloadUrl(String driverVersion) {
+        if (!browserVersionRegex.matcher(driverVersion).matches()) {
             throw new IllegalArgumentException("the driver version: " + driverVersion + " not match the version regex: " + browserVersionPattern);
         }
-        String url = "";
-        String pattern = "";
-        if (Helper.urlConnectivity(String.format(firefoxDownloadPattern, driverVersion, driverVersion, currentPlatform.getName()) + "32.zip")) {
-            pattern = firefoxDownloadPattern;
-        } else {
-            pattern = firefoxMirrorDownloadPattern;
-        }
-        if (currentPlatform.equals(Platform.Windows)) {
-            String spec = String.valueOf(arch).equals("32") ? "32.zip" : "64.zip";
-            url = String.format(pattern, driverVersion, driverVersion, currentPlatform.getName()) + spec;
-        } else if (currentPlatform.equals(Platform.Mac)) {
-            String spec = String.valueOf(arch).equals("32") ? "os.tar.gz" : "os-aarch64.tar.gz";
-            url = String.format(pattern, driverVersion, driverVersion, currentPlatform.getName(), arch) + spec;
-        } else if (currentPlatform.equals(Platform.Linux)) {
-            String spec = String.valueOf(arch).equals("32") ? "32.tar.gz" : "64.tar.gz";
-            url = String.format(pattern, driverVersion, driverVersion, currentPlatform.getName(), arch) + spec;
-        } else {
-            throw new IllegalArgumentException("not support platform: " + currentPlatform);
-        }
+        return resolveDownloadUrl(DriverType.Firefox, driverVersion, name -> firefoxDownloadPatterns.stream()
+                .map(pattern -> String.format(pattern, driverVersion, driverVersion, name))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    protected File downloadDriver(String driverVersion) {
+        String url = getDownloadUrl(driverVersion);
         String path = getDriverSavePath(DriverType.Firefox) + File.separator + driverVersion;
         File file = new File(path);
         if (!file.exists()) {
             file.mkdirs();
         }
         File driverFile = new File(path + File.separator + new File(url).getName());
-        Helper.downloadFile(url, driverFile);
+        Helper.downloadFile(url, driverFile, getPinnedDigest(DriverType.Firefox, driverVersion, url));
         if (!driverFile.exists()) {
             throw new FileNotFoundException("failed to download chrome driver");
         }
@@ -107,23 +108,24 @@ public class Firefox extends AutoWebdriver {
 
     @Override
     public String getLocalDriverVersion(DriverType type) {
-        List<String> commands = driverPlatformCommands.get(type).get(currentPlatform);
-        List<String> versions = commands.stream()
-                .map(Helper::exeRuntimeCommand)
-                .map(AbstractDriverProperties::parseBrowserVersion)
-                .distinct()
-                .filter(i -> !"".equals(i))
-                .collect(Collectors.toList());
-        if (versions.isEmpty()) {
+        VersionProbe.Result result = probeBrowser(type);
+        if (Objects.isNull(result)) {
             throw new UnableToGetLocalBroserVersionException("unable to find firefox browser version, may not install google chrome");
         }
-        return versions.get(0);
+        return result.getVersion();
+    }
+
+    private VersionRangeIndex fetchNewVersionMapping() {
+        try {
+            return VersionRangeIndex.of(VersionIndex.load(getVersionIndexFile(DriverType.Firefox, "mapping"), firefoxVersionMappingUrl, versionMappingType,
+                    (in, url) -> parseVersionMapping(Jsoup.parse(in, null, url))));
+        } catch (IOException e) {
+            log.error(e.toString(), e);
+        }
+        return VersionRangeIndex.of(Collections.emptyMap());
     }
 
-    private Map<String, List<Integer>> fetchNewVersionMapping() {
-        HttpRequests httpRequest = new HttpRequests();
-        httpRequest.get(firefoxVersionMappingUrl, new HashMap<>());
-        Document document = Jsoup.parse(httpRequest.getText());
+    private Map<String, List<Integer>> parseVersionMapping(Document document) {
         Elements elements = document.selectXpath("//tr/td");
         List<String> list = elements.stream().map(Element::text).collect(Collectors.toList());
         List<List<String>> rawList = groupByNumber(list, 4);
@@ -0,0 +1,40 @@
+package io.driver.manage.enums;
+
+public enum Arch {
+    X86("32"), X64("64"), Arm64("arm64");
+
+    private String name;
+
+    Arch(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @param name {@code 32}, {@code 64}, {@code arm64} or an {@code os.arch} value such as {@code amd64} or {@code aarch64}
+     */
+    public static Arch of(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "32":
+            case "x86":
+            case "i386":
+            case "i486":
+            case "i586":
+            case "i686":
+                return X86;
+            case "64":
+            case "x64":
+            case "amd64":
+            case "x86_64":
+                return X64;
+            case "arm64":
+            case "aarch64":
+                return Arm64;
+            default:
+                throw new IllegalArgumentException("not supported arch: " + name);
+        }
+    }
+}
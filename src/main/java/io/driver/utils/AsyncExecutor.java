@@ -0,0 +1,88 @@
+package io.driver.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared executors. {@link #get()} runs asynchronous driver configuration: virtual threads when the running JVM
+ * has them (and {@code async.virtualThreads} is enabled), otherwise a bounded pool of {@code async.threads} daemon
+ * threads. {@link #io()} runs the short blocking sub tasks of a configuration (probes, mirror races); it is kept
+ * separate and unbounded so those tasks can never queue behind the configurations waiting for them.
+ */
+@Slf4j
+public class AsyncExecutor {
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    private static volatile ExecutorService executor;
+    private static volatile ExecutorService ioExecutor;
+
+    private AsyncExecutor() {
+
+    }
+
+    public static ExecutorService get() {
+        ExecutorService current = executor;
+        if (current == null) {
+            synchronized (AsyncExecutor.class) {
+                current = executor;
+                if (current == null) {
+                    current = virtualThreads();
+                    if (current == null) {
+                        int threads = Math.max(1, Config.getInt("async.threads", 3));
+                        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                new LinkedBlockingQueue<>(), daemonThreads("driver-config-"));
+                        pool.allowCoreThreadTimeOut(true);
+                        current = pool;
+                    }
+                    executor = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    public static ExecutorService io() {
+        ExecutorService current = ioExecutor;
+        if (current == null) {
+            synchronized (AsyncExecutor.class) {
+                current = ioExecutor;
+                if (current == null) {
+                    current = virtualThreads();
+                    if (current == null) {
+                        current = Executors.newCachedThreadPool(daemonThreads("driver-io-"));
+                    }
+                    ioExecutor = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static ExecutorService virtualThreads() {
+        if (Config.getBoolean("async.virtualThreads", true)) {
+            try {
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                log.debug("using virtual threads for driver configuration");
+                return (ExecutorService) method.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.debug("virtual threads are not available: {}", e.toString());
+            }
+        }
+        return null;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        return r -> {
+            Thread thread = new Thread(r, prefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
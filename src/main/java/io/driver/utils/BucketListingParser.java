@@ -0,0 +1,137 @@
+package io.driver.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Streaming (StAX) reader for storage bucket listings: the S3 style {@code ListBucketResult} served for
+ * chromedriver ({@code <Key>}) and the Azure {@code EnumerationResults} served for edgedriver ({@code <Name>}).
+ * Keys are filtered while the document is read, nothing else is retained, and truncated listings are
+ * followed through their {@code NextMarker}, up to {@code index.maxPages} pages.
+ */
+@Slf4j
+public class BucketListingParser {
+    private static final XMLInputFactory factory = createFactory();
+
+    private BucketListingParser() {
+
+    }
+
+    public interface KeyHandler {
+        /**
+         * @return false to stop reading the listing
+         */
+        boolean accept(String key);
+    }
+
+    public static List<String> list(InputStream firstPage, String url, String keyElement, Predicate<String> filter) throws IOException {
+        List<String> keys = new ArrayList<>();
+        read(firstPage, url, keyElement, key -> {
+            if (filter.test(key)) {
+                keys.add(key);
+            }
+            return true;
+        });
+        return keys;
+    }
+
+    public static void read(InputStream firstPage, String url, String keyElement, KeyHandler handler) throws IOException {
+        int maxPages = Config.getInt("index.maxPages", 1000);
+        Page page = parsePage(firstPage, keyElement, handler);
+        for (int pages = 1; page.hasNext(); pages++) {
+            if (pages >= maxPages) {
+                throw new IOException("listing " + url + " has more than " + maxPages + " pages, raise index.maxPages to read it all");
+            }
+            String next = url + (url.contains("?") ? "&" : "?") + "marker=" + encode(page.nextMarker);
+            log.debug("following listing continuation: {}", next);
+            try (HttpTransport.Response response = HttpTransport.get(next, "index")) {
+                if (response.getCode() != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("unexpected response code: " + response.getCode() + " for url: " + next);
+                }
+                page = parsePage(response.getBody(), keyElement, handler);
+            }
+        }
+    }
+
+    public static Page parsePage(InputStream in, String keyElement, KeyHandler handler) throws IOException {
+        Page page = new Page();
+        XMLStreamReader reader = null;
+        try {
+            reader = factory.createXMLStreamReader(in);
+            String lastKey = null;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+                if (keyElement.equalsIgnoreCase(name)) {
+                    lastKey = reader.getElementText().trim();
+                    if (!handler.accept(lastKey)) {
+                        page.stopped = true;
+                        return page;
+                    }
+                } else if ("NextMarker".equalsIgnoreCase(name)) {
+                    page.nextMarker = reader.getElementText().trim();
+                } else if ("IsTruncated".equalsIgnoreCase(name)) {
+                    page.truncated = Boolean.parseBoolean(reader.getElementText().trim());
+                }
+            }
+            if (page.truncated && (page.nextMarker == null || page.nextMarker.isEmpty())) {
+                page.nextMarker = lastKey;
+            }
+            return page;
+        } catch (XMLStreamException e) {
+            throw new IOException("unable to parse bucket listing: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    log.debug(e.toString());
+                }
+            }
+        }
+    }
+
+    private static String encode(String marker) {
+        try {
+            return URLEncoder.encode(marker, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return xmlInputFactory;
+    }
+
+    public static class Page {
+        private boolean truncated;
+        private boolean stopped;
+        private String nextMarker;
+
+        public boolean hasNext() {
+            return !stopped && nextMarker != null && !nextMarker.isEmpty();
+        }
+
+        public String getNextMarker() {
+            return nextMarker;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.driver.utils;
+
+import io.driver.exception.CacheLockException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a driver cache directory, shared between threads of this JVM (a {@link ReentrantLock})
+ * and between processes (a {@link FileLock} on the sibling {@code <dir>.lock} file).
+ */
+@Slf4j
+public class CacheLock implements AutoCloseable {
+    private static final ConcurrentMap<String, ReentrantLock> localLocks = new ConcurrentHashMap<>();
+    private final ReentrantLock localLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private CacheLock(ReentrantLock localLock, FileChannel channel, FileLock fileLock) {
+        this.localLock = localLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    public static CacheLock acquire(File directory) {
+        long timeout = TimeUnit.SECONDS.toMillis(Config.getInt("cache.lockTimeoutSeconds", 600));
+        CacheLock lock = lock(directory, timeout);
+        if (lock == null) {
+            throw new CacheLockException("timed out waiting for the lock on: " + directory.getAbsolutePath());
+        }
+        return lock;
+    }
+
+    public static CacheLock tryAcquire(File directory) {
+        return lock(directory, 0);
+    }
+
+    static File getLockFile(File directory) {
+        return new File(directory.getAbsolutePath() + ".lock");
+    }
+
+    private static CacheLock lock(File directory, long timeoutMillis) {
+        File lockFile = getLockFile(directory);
+        ReentrantLock localLock = localLocks.computeIfAbsent(lockFile.getAbsolutePath(), k -> new ReentrantLock());
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            if (!localLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheLockException("interrupted while waiting for the lock on: " + directory.getAbsolutePath());
+        }
+        FileChannel channel = null;
+        try {
+            File parent = lockFile.getParentFile();
+            if (!parent.exists() && !parent.mkdirs() && !parent.exists()) {
+                throw new IOException("unable to create the directory: " + parent);
+            }
+            channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            long wait = 50;
+            boolean logged = false;
+            while (true) {
+                FileLock fileLock = tryLock(channel);
+                if (fileLock != null) {
+                    return new CacheLock(localLock, channel, fileLock);
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    break;
+                }
+                if (!logged) {
+                    log.info("another process is preparing {}, waiting for it", directory.getAbsolutePath());
+                    logged = true;
+                }
+                Thread.sleep(Math.min(wait, Math.max(1, deadline - System.currentTimeMillis())));
+                wait = Math.min(wait * 2, 1000);
+            }
+        } catch (IOException e) {
+            log.error(e.toString(), e);
+            closeQuietly(channel);
+            localLock.unlock();
+            throw new CacheLockException("unable to lock: " + lockFile.getAbsolutePath());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closeQuietly(channel);
+            localLock.unlock();
+            throw new CacheLockException("interrupted while waiting for the lock on: " + directory.getAbsolutePath());
+        }
+        closeQuietly(channel);
+        localLock.unlock();
+        return null;
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug(e.toString());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            log.debug(e.toString());
+        } finally {
+            closeQuietly(channel);
+            localLock.unlock();
+        }
+    }
+}
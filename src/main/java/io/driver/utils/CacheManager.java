@@ -0,0 +1,176 @@
+package io.driver.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the driver cache ({@code <cache root>/<browser>/<version>}) within its budgets. Every use of a driver
+ * touches a {@code .last-access} marker in its version directory; compaction evicts, least recently used first,
+ * versions idle for longer than {@code cache.maxAgeDays}, beyond {@code cache.maxEntries} per browser or beyond
+ * {@code cache.maxSizeMB} in total. The most recently used version of each browser is always kept, and a version
+ * locked by another process is skipped. Compaction also removes archives whose driver has been verified and
+ * stale temporary files, and runs in the background at most every {@code cache.compactIntervalMinutes}.
+ */
+@Slf4j
+public class CacheManager {
+    private static final String accessMarker = ".last-access";
+    private static final String compactionMarker = ".last-compaction";
+    private static final long staleTempMillis = TimeUnit.HOURS.toMillis(1);
+    private static final AtomicBoolean compacting = new AtomicBoolean();
+
+    private CacheManager() {
+
+    }
+
+    public static void touch(File driver) {
+        File versionDir = driver.getAbsoluteFile().getParentFile();
+        if (versionDir == null || !versionDir.isDirectory()) {
+            return;
+        }
+        File marker = new File(versionDir, accessMarker);
+        try {
+            FileUtils.touch(marker);
+        } catch (IOException e) {
+            log.debug("unable to update the access time of {}: {}", versionDir, e.toString());
+        }
+        // <cache root>/<browser>/<version>, so a manager with its own cache root bounds that cache
+        File root = Objects.isNull(versionDir.getParentFile()) ? null : versionDir.getParentFile().getParentFile();
+        if (!Objects.isNull(root)) {
+            compactInBackground(root);
+        }
+    }
+
+    public static void compactInBackground(File root) {
+        long interval = TimeUnit.MINUTES.toMillis(Config.getInt("cache.compactIntervalMinutes", 60));
+        File marker = new File(root, compactionMarker);
+        if (System.currentTimeMillis() - marker.lastModified() < interval || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            AsyncExecutor.io().execute(() -> {
+                try {
+                    FileUtils.touch(marker);
+                    compact(root);
+                    DriverStore.collect();
+                } catch (IOException | RuntimeException e) {
+                    log.warn("driver cache compaction failed: {}", e.toString());
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            compacting.set(false);
+            log.debug("unable to schedule driver cache compaction: {}", e.toString());
+        }
+    }
+
+    public static void compact(File root) {
+        File[] browsers = root.listFiles(File::isDirectory);
+        if (browsers == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long maxAge = TimeUnit.DAYS.toMillis(Config.getInt("cache.maxAgeDays", 30));
+        int maxEntries = Math.max(1, Config.getInt("cache.maxEntries", 3));
+        long maxBytes = Config.getInt("cache.maxSizeMB", 512) * 1024L * 1024L;
+        List<Entry> candidates = new ArrayList<>();
+        long totalBytes = 0;
+        for (File browser : browsers) {
+            List<Entry> entries = new ArrayList<>();
+            File[] versions = browser.listFiles(File::isDirectory);
+            if (versions == null) {
+                continue;
+            }
+            for (File version : versions) {
+                if (version.getName().startsWith(".staging-") && now - version.lastModified() > staleTempMillis) {
+                    FileUtils.deleteQuietly(version);
+                } else if (Version.isVersion(version.getName())) {
+                    try (CacheLock lock = CacheLock.tryAcquire(version)) {
+                        if (lock != null) {
+                            cleanUp(version, now);
+                        }
+                    }
+                    entries.add(new Entry(version));
+                }
+            }
+            entries.sort(Comparator.comparingLong((Entry i) -> i.lastAccess).reversed());
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                totalBytes += entry.bytes;
+                if (i == 0) {
+                    continue;
+                }
+                entry.expired = i >= maxEntries || now - entry.lastAccess > maxAge;
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(i -> i.lastAccess));
+        for (Entry entry : candidates) {
+            if (entry.expired || totalBytes > maxBytes) {
+                if (evict(entry)) {
+                    totalBytes -= entry.bytes;
+                }
+            }
+        }
+    }
+
+    private static boolean evict(Entry entry) {
+        try (CacheLock lock = CacheLock.tryAcquire(entry.directory)) {
+            if (lock == null) {
+                log.debug("driver {} is in use, not evicting it", entry.directory);
+                return false;
+            }
+            log.info("evicting cached driver: {} ({} bytes, last used {})", entry.directory, entry.bytes, new Date(entry.lastAccess));
+            FileUtils.deleteDirectory(entry.directory);
+            FileUtils.deleteQuietly(CacheLock.getLockFile(entry.directory));
+            return true;
+        } catch (IOException e) {
+            log.warn("unable to evict cached driver {}: {}", entry.directory, e.toString());
+            return false;
+        }
+    }
+
+    private static void cleanUp(File versionDir, long now) {
+        File[] files = versionDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        boolean verified = new File(versionDir, ".verified.json").isFile();
+        for (File file : files) {
+            String name = file.getName();
+            boolean stale = now - file.lastModified() > staleTempMillis;
+            if (stale && name.endsWith(".tmp")) {
+                FileUtils.deleteQuietly(file);
+            } else if (verified && !Config.getBoolean("cache.keepArchives", false) && isArchive(name)) {
+                log.debug("removing extracted archive: {}", file);
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    public static boolean isArchive(String name) {
+        String extension = FilenameUtils.getExtension(name);
+        return "zip".equals(extension) || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    private static class Entry {
+        private final File directory;
+        private final long lastAccess;
+        private final long bytes;
+        private boolean expired;
+
+        private Entry(File directory) {
+            this.directory = directory;
+            File marker = new File(directory, accessMarker);
+            this.lastAccess = marker.isFile() ? marker.lastModified() : directory.lastModified();
+            this.bytes = FileUtils.sizeOfDirectory(directory);
+        }
+    }
+}
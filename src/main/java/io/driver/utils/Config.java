@@ -4,93 +4,286 @@ import io.driver.exception.ReadConfigurationFailException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
-import org.apache.commons.configuration.reloading.FileChangedReloadingStrategy;
+import org.apache.commons.configuration.PropertyConverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.*;
+import java.util.*;
 
+/**
+ * Configuration snapshot, parsed once and immutable: every read is a map lookup without file access. Layers, each
+ * overriding the previous one: the bundled autowebdriver.properties, the user file ({@code autowebdriver.config}
+ * system property or {@code AUTOWEBDRIVER_CONFIG}, default {@code ~/.autowebdriver.properties}), environment
+ * variables ({@code AUTOWEBDRIVER_CACHE_MAXENTRIES} for {@code cache.maxEntries}), system properties
+ * ({@code -Dautowebdriver.cache.maxEntries}) and {@link #override(String, String)}. The files are re-read only
+ * by {@link #reload()} or, with {@code config.watch=true} or {@link #watch()}, when a file watcher sees them change.
+ */
 @Slf4j
 public class Config {
-
-
-    private static PropertiesConfiguration config;
+    private static final String envPrefix = "AUTOWEBDRIVER_";
+    private static final String propertyPrefix = "autowebdriver.";
+    private static final URL bundledUrl = Config.class.getClassLoader().getResource("autowebdriver.properties");
+    private static final Map<String, Object> overridden = new LinkedHashMap<>();
+    private static PropertiesConfiguration bundled;
+    private static PropertiesConfiguration user;
+    private static volatile Map<String, List<String>> snapshot;
+    private static volatile long generation;
+    private static Thread watcher;
 
     static {
-        try {
-            URL url = Config.class.getClassLoader().getResource("autowebdriver.properties");
-            if (url == null) {
-                throw new RuntimeException("unable to find resource: autowebdriver.properties");
-            }
-            config = new PropertiesConfiguration(url);
-            config.setEncoding("UTF-8");
-            config.setReloadingStrategy(new FileChangedReloadingStrategy());
-        } catch (ConfigurationException e) {
-            throw new ReadConfigurationFailException("load autowebdriver.properties error: " + e.toString());
+        if (bundledUrl == null) {
+            throw new RuntimeException("unable to find resource: autowebdriver.properties");
+        }
+        reload();
+        if (getBoolean("config.watch", false)) {
+            watch();
         }
     }
 
+    private Config() {
+
+    }
 
     public static String[] getStringArray(final String propertyName) {
-        return config.getStringArray(propertyName);
+        return getValues(propertyName).toArray(new String[0]);
     }
 
     public static String getString(final String propertyName) {
-        return config.getString(propertyName);
+        List<String> values = snapshot.get(propertyName);
+        return values == null || values.isEmpty() ? null : values.get(0);
     }
 
     public static List<String> getList(final String propertyName) {
-        List<Object> list = config.getList(propertyName);
-        List<String> listStr = new ArrayList<>();
-
-        for (Object obj : list) {
-            String str = String.valueOf(obj);
-            listStr.add(str);
-        }
-        return listStr;
+        return new ArrayList<>(getValues(propertyName));
     }
 
     public static String getString(final String propertyName, final String defaultValue) {
-        return config.getString(propertyName, defaultValue);
+        String value = getString(propertyName);
+        return value == null ? defaultValue : value;
     }
 
     public static int getInt(final String propertyName) {
-        return config.getInt(propertyName);
+        return PropertyConverter.toInteger(getRequired(propertyName));
     }
 
     public static int getInt(final String propertyName, final int defaultValue) {
-        return config.getInt(propertyName, defaultValue);
+        String value = getString(propertyName);
+        return value == null ? defaultValue : PropertyConverter.toInteger(value);
     }
 
     public static float getFloat(final String propertyName) {
-        return config.getFloat(propertyName);
+        return PropertyConverter.toFloat(getRequired(propertyName));
     }
 
     public static float getFloat(final String propertyName, final int defaultValue) {
-        return config.getFloat(propertyName, defaultValue);
+        String value = getString(propertyName);
+        return value == null ? defaultValue : PropertyConverter.toFloat(value);
     }
 
     public static double getDouble(final String propertyName) {
-        return config.getDouble(propertyName);
+        return PropertyConverter.toDouble(getRequired(propertyName));
     }
 
     public static double getDouble(final String propertyName, final int defaultValue) {
-        return config.getDouble(propertyName, defaultValue);
+        String value = getString(propertyName);
+        return value == null ? defaultValue : PropertyConverter.toDouble(value);
     }
 
     public static boolean getBoolean(final String propertyName) {
-        return config.getBoolean(propertyName);
+        return PropertyConverter.toBoolean(getRequired(propertyName));
     }
 
     public static boolean getBoolean(final String propertyName, final boolean defaultValue) {
-        return config.getBoolean(propertyName, defaultValue);
+        String value = getString(propertyName);
+        return value == null ? defaultValue : PropertyConverter.toBoolean(value);
     }
 
     public static synchronized void setProperty(String propertyName, String propertyValue) {
         try {
-            config.setProperty(propertyName, propertyValue);
-            config.save();
+            PropertiesConfiguration file = load(bundledUrl);
+            file.setProperty(propertyName, propertyValue);
+            file.save();
+            bundled = file;
+            snapshot = build();
         } catch (ConfigurationException e) {
             log.error("Exception occured while writing autowebdriver.properties.", e);
         }
     }
+
+    /**
+     * Sets a property for the running JVM only, autowebdriver.properties is left untouched.
+     */
+    public static synchronized void override(String propertyName, String propertyValue) {
+        overridden.put(propertyName, propertyValue);
+        snapshot = build();
+    }
+
+    public static synchronized void clearOverrides() {
+        overridden.clear();
+        snapshot = build();
+    }
+
+    /**
+     * Re-reads the bundled and the user file and rebuilds the snapshot.
+     */
+    public static synchronized void reload() {
+        try {
+            bundled = load(bundledUrl);
+            File userFile = getUserFile();
+            user = userFile.isFile() ? load(userFile.toURI().toURL()) : null;
+        } catch (ConfigurationException | IOException e) {
+            throw new ReadConfigurationFailException("load autowebdriver.properties error: " + e.toString());
+        }
+        snapshot = build();
+    }
+
+    /**
+     * Starts a daemon thread that reloads the configuration when the user file or a bundled file on the file system
+     * changes.
+     */
+    public static synchronized void watch() {
+        if (watcher != null) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        files.add(getUserFile().toPath().toAbsolutePath());
+        if ("file".equals(bundledUrl.getProtocol())) {
+            try {
+                files.add(Paths.get(bundledUrl.toURI()));
+            } catch (URISyntaxException e) {
+                log.debug("not watching {}: {}", bundledUrl, e.toString());
+            }
+        }
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            for (Path file : files) {
+                if (Files.isDirectory(file.getParent())) {
+                    file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.ENTRY_DELETE);
+                }
+            }
+            watcher = new Thread(() -> watch(service, files), "config-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException e) {
+            log.warn("unable to watch the configuration: {}", e.toString());
+        }
+    }
+
+    private static void watch(WatchService service, List<Path> files) {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                Path changedFile = ((Path) key.watchable()).resolve(String.valueOf(event.context()));
+                changed |= files.contains(changedFile) || event.kind() == StandardWatchEventKinds.OVERFLOW;
+            }
+            key.reset();
+            if (changed) {
+                try {
+                    reload();
+                    log.info("configuration reloaded");
+                } catch (RuntimeException e) {
+                    log.warn("unable to reload the configuration, keeping the previous one: {}", e.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a number that changes whenever the snapshot is rebuilt
+     */
+    public static long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return a hash of every effective setting, stable across runs while the configuration is unchanged
+     */
+    public static int hash() {
+        return snapshot.hashCode();
+    }
+
+    private static List<String> getValues(String propertyName) {
+        List<String> values = snapshot.get(propertyName);
+        return values == null ? Collections.emptyList() : values;
+    }
+
+    private static String getRequired(String propertyName) {
+        String value = getString(propertyName);
+        if (value == null) {
+            throw new NoSuchElementException("'" + propertyName + "' doesn't map to an existing object");
+        }
+        return value;
+    }
+
+    private static File getUserFile() {
+        String configured = System.getProperty(propertyPrefix + "config", System.getenv(envPrefix + "CONFIG"));
+        return configured == null || configured.isEmpty()
+                ? new File(System.getProperty("user.home"), ".autowebdriver.properties") : new File(configured);
+    }
+
+    private static PropertiesConfiguration load(URL url) throws ConfigurationException {
+        PropertiesConfiguration configuration = new PropertiesConfiguration();
+        configuration.setEncoding("UTF-8");
+        configuration.setURL(url);
+        configuration.load(url);
+        return configuration;
+    }
+
+    private static Map<String, List<String>> build() {
+        PropertiesConfiguration merged = new PropertiesConfiguration();
+        merged.setDelimiterParsingDisabled(true);
+        Set<String> known = new LinkedHashSet<>();
+        for (PropertiesConfiguration layer : Arrays.asList(bundled, user)) {
+            if (layer == null) {
+                continue;
+            }
+            for (Iterator<String> keys = layer.getKeys(); keys.hasNext(); ) {
+                String key = keys.next();
+                known.add(key);
+                merged.setProperty(key, layer.getProperty(key));
+            }
+        }
+        for (Map.Entry<String, String> variable : System.getenv().entrySet()) {
+            if (variable.getKey().startsWith(envPrefix) && !variable.getKey().equals(envPrefix + "CONFIG")) {
+                setSplit(merged, toKey(variable.getKey().substring(envPrefix.length()), known), variable.getValue());
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(propertyPrefix) && !name.equals(propertyPrefix + "config")) {
+                setSplit(merged, name.substring(propertyPrefix.length()), System.getProperty(name));
+            }
+        }
+        overridden.forEach((key, value) -> setSplit(merged, key, String.valueOf(value)));
+        Map<String, List<String>> values = new HashMap<>();
+        for (Iterator<String> keys = merged.getKeys(); keys.hasNext(); ) {
+            String key = keys.next();
+            values.put(key, Collections.unmodifiableList(Arrays.asList(merged.getStringArray(key))));
+        }
+        generation++;
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static void setSplit(PropertiesConfiguration merged, String key, String value) {
+        merged.setProperty(key, PropertyConverter.split(value, ',', true));
+    }
+
+    private static String toKey(String variable, Set<String> known) {
+        for (String key : known) {
+            if (key.replace('.', '_').equalsIgnoreCase(variable)) {
+                return key;
+            }
+        }
+        return variable.toLowerCase().replace('_', '.');
+    }
 }
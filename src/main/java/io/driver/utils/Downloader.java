@@ -0,0 +1,346 @@
+package io.driver.utils;
+
+import com.google.common.io.BaseEncoding;
+import io.driver.exception.DownloadFailedException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Segmented downloader: the remote file is split into HTTP Range requests fetched in parallel
+ * into a {@code .part} file, whose progress is kept in a {@code .part.state} file so an interrupted
+ * download resumes where it stopped. The destination only appears once the length (and checksum,
+ * if one is given) has been verified.
+ */
+@Slf4j
+public class Downloader {
+    private static final String partSuffix = ".part";
+    private static final String stateSuffix = ".part.state";
+    private static final int bufferSize = 64 * 1024;
+    private static final long persistInterval = 1024 * 1024;
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    private static final Map<String, String> identity = Collections.singletonMap("Accept-Encoding", "identity");
+
+    private Downloader() {
+
+    }
+
+    public static File download(String url, File destination) {
+        return download(url, destination, null);
+    }
+
+    public static File download(String url, File destination, String expectedSha256) {
+        File parent = destination.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new DownloadFailedException("unable to create the directory: " + parent);
+        }
+        File part = new File(destination.getPath() + partSuffix);
+        File state = new File(destination.getPath() + stateSuffix);
+        try {
+            RemoteFile remote = probe(url);
+            try {
+                fetch(url, remote, part, state);
+            } catch (RemoteChangedException e) {
+                log.warn("{} changed while downloading, starting over: {}", url, e.getMessage());
+                FileUtils.deleteQuietly(part);
+                FileUtils.deleteQuietly(state);
+                remote = probe(url);
+                fetch(url, remote, part, state);
+            }
+            verify(url, remote, part, expectedSha256);
+            Helper.moveAtomically(part, destination);
+            FileUtils.deleteQuietly(state);
+        } catch (IOException e) {
+            log.error(e.toString(), e);
+            MirrorSelector.recordFailure(url);
+            throw new DownloadFailedException("failed to download: " + url + ", " + e.getMessage());
+        }
+        return destination;
+    }
+
+    private static void fetch(String url, RemoteFile remote, File part, File state) throws IOException {
+        if (remote.length > 0 && remote.acceptRanges) {
+            downloadSegments(url, remote, part, state);
+        } else {
+            downloadSingleStream(url, remote, part);
+        }
+    }
+
+    private static RemoteFile probe(String url) {
+        RemoteFile remote = new RemoteFile();
+        long start = System.currentTimeMillis();
+        try (HttpTransport.Response response = HttpTransport.execute("HEAD", url, "download", identity)) {
+            if (response.getCode() == HttpURLConnection.HTTP_OK) {
+                MirrorSelector.recordSuccess(url, System.currentTimeMillis() - start);
+                remote.length = response.getContentLength();
+                remote.acceptRanges = "bytes".equalsIgnoreCase(response.getHeader("Accept-Ranges"));
+                remote.validator = firstNonNull(response.getHeader("ETag"), response.getHeader("Last-Modified"));
+            }
+        } catch (IOException e) {
+            log.warn("unable to probe: {}, fall back to single stream download: {}", url, e.toString());
+        }
+        return remote;
+    }
+
+    private static void downloadSingleStream(String url, RemoteFile remote, File part) throws IOException {
+        log.info("downloading: {} with a single stream", url);
+        try (HttpTransport.Response response = HttpTransport.get(url, "download", identity)) {
+            int code = response.getCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("unexpected response code: " + code + " for url: " + url);
+            }
+            if (response.getContentLength() >= 0) {
+                // the length of what is actually sent, also when the HEAD probe failed or had none
+                remote.length = response.getContentLength();
+            }
+            try (InputStream in = response.getBody();
+                 OutputStream out = new FileOutputStream(part)) {
+                byte[] buffer = new byte[bufferSize];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+        }
+    }
+
+    private static void downloadSegments(String url, RemoteFile remote, File part, File state) throws IOException {
+        List<Segment> segments = loadState(state, remote, part);
+        if (segments.isEmpty()) {
+            segments = split(remote.length);
+            FileUtils.deleteQuietly(part);
+        } else {
+            log.info("resuming download: {} from {} bytes", url, segments.stream().mapToLong(Segment::done).sum());
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(part, "rw")) {
+            raf.setLength(remote.length);
+        }
+        log.info("downloading: {} ({} bytes) in {} segments", url, remote.length, segments.size());
+        int threads = Math.min(segments.size(), Config.getInt("download.threads", 4));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "driver-download-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(part.toPath(), StandardOpenOption.WRITE)) {
+            List<Segment> all = segments;
+            List<Future<?>> futures = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (segment.position <= segment.end) {
+                    futures.add(executor.submit(() -> {
+                        fetchSegment(url, segment, channel, all, state, remote);
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RemoteChangedException) {
+                        throw (RemoteChangedException) cause;
+                    }
+                    saveState(channel, state, remote, all);
+                    throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    saveState(channel, state, remote, all);
+                    throw new IOException("download interrupted: " + url);
+                }
+            }
+            channel.force(false);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void fetchSegment(String url, Segment segment, FileChannel channel, List<Segment> all,
+                                     File state, RemoteFile remote) throws IOException {
+        int retries = Config.getInt("download.retries", 3);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                fetchRange(url, segment, channel, all, state, remote);
+                return;
+            } catch (RemoteChangedException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+                log.warn("segment {}-{} of {} failed at {}, retrying: {}", segment.start, segment.end, url, segment.position, e.toString());
+            }
+        }
+    }
+
+    private static void fetchRange(String url, Segment segment, FileChannel channel, List<Segment> all,
+                                   File state, RemoteFile remote) throws IOException {
+        Map<String, String> headers = new HashMap<>(identity);
+        headers.put("Range", "bytes=" + segment.position + "-" + segment.end);
+        if (remote.validator != null) {
+            headers.put("If-Range", remote.validator);
+        }
+        try (HttpTransport.Response response = HttpTransport.get(url, "download", headers)) {
+            int code = response.getCode();
+            if (code == HttpURLConnection.HTTP_OK && remote.validator != null) {
+                // If-Range didn't match: the server sent the whole new file instead of our range
+                throw new RemoteChangedException("validator is no longer " + remote.validator);
+            }
+            if (code != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("server did not honour range request, response code: " + code);
+            }
+            long unsaved = 0;
+            try (InputStream in = response.getBody()) {
+                byte[] buffer = new byte[bufferSize];
+                int read;
+                while (segment.position <= segment.end && (read = in.read(buffer)) != -1) {
+                    int length = (int) Math.min(read, segment.end - segment.position + 1);
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+                    while (byteBuffer.hasRemaining()) {
+                        segment.position += channel.write(byteBuffer, segment.position);
+                    }
+                    unsaved += length;
+                    if (unsaved >= persistInterval) {
+                        saveState(channel, state, remote, all);
+                        unsaved = 0;
+                    }
+                }
+            }
+            if (segment.position <= segment.end) {
+                throw new IOException("connection closed before segment " + segment.start + "-" + segment.end + " was complete");
+            }
+        }
+    }
+
+    private static List<Segment> split(long length) {
+        long minSegment = Math.max(1, Config.getInt("download.minSegmentSize", 1024 * 1024));
+        int threads = Math.max(1, Config.getInt("download.threads", 4));
+        int count = (int) Math.max(1, Math.min(threads, length / minSegment));
+        long size = length / count;
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long start = i * size;
+            long end = i == count - 1 ? length - 1 : start + size - 1;
+            segments.add(new Segment(start, end, start));
+        }
+        return segments;
+    }
+
+    private static List<Segment> loadState(File state, RemoteFile remote, File part) {
+        List<Segment> segments = new ArrayList<>();
+        if (!state.exists() || !part.exists() || part.length() != remote.length) {
+            return segments;
+        }
+        try {
+            List<String> lines = FileUtils.readLines(state, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals(header(remote))) {
+                return segments;
+            }
+            for (String line : lines.subList(1, lines.size())) {
+                String[] fields = line.trim().split(" ");
+                segments.add(new Segment(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("discarding unreadable download state: {}", state);
+            segments.clear();
+        }
+        return segments;
+    }
+
+    /**
+     * Persists the segment positions. They are read before the bytes below them are forced to disk, so a position
+     * another segment advances meanwhile is not recorded until a later save, and a resume never skips data that was
+     * only in the page cache when the machine went down.
+     */
+    private static synchronized void saveState(FileChannel channel, File state, RemoteFile remote, List<Segment> segments) {
+        StringBuilder builder = new StringBuilder(header(remote)).append('\n');
+        for (Segment segment : segments) {
+            builder.append(segment.start).append(' ').append(segment.end).append(' ').append(segment.position).append('\n');
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            log.warn("unable to flush the download, not saving its state: {}", e.toString());
+            return;
+        }
+        try {
+            FileUtils.writeStringToFile(state, builder.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("unable to save download state: {}", e.toString());
+        }
+    }
+
+    private static String header(RemoteFile remote) {
+        return remote.length + " " + (remote.validator == null ? "-" : remote.validator.replace(' ', '_'));
+    }
+
+    private static void verify(String url, RemoteFile remote, File part, String expectedSha256) throws IOException {
+        if (remote.length >= 0 && part.length() != remote.length) {
+            throw new IOException("length mismatch for " + url + ", expected: " + remote.length + ", actual: " + part.length());
+        }
+        if (expectedSha256 != null && !"".equals(expectedSha256)) {
+            String actual = sha256(part);
+            if (!actual.equalsIgnoreCase(expectedSha256)) {
+                FileUtils.deleteQuietly(part);
+                throw new IOException("checksum mismatch for " + url + ", expected: " + expectedSha256 + ", actual: " + actual);
+            }
+        }
+    }
+
+    public static String sha256(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[bufferSize];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return BaseEncoding.base16().lowerCase().encode(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String firstNonNull(String first, String second) {
+        return first != null ? first : second;
+    }
+
+    private static class RemoteChangedException extends IOException {
+        private RemoteChangedException(String message) {
+            super(message);
+        }
+    }
+
+    private static class RemoteFile {
+        private long length = -1;
+        private boolean acceptRanges;
+        private String validator;
+    }
+
+    private static class Segment {
+        private final long start;
+        private final long end;
+        private volatile long position;
+
+        private Segment(long start, long end, long position) {
+            this.start = start;
+            this.end = end;
+            this.position = position;
+        }
+
+        private long done() {
+            return position - start;
+        }
+    }
+}
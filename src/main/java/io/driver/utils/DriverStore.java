@@ -0,0 +1,208 @@
+package io.driver.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content-addressed driver store shared by every JVM and user that points {@code store.dir} at the same place.
+ * Drivers are kept read-only as {@code sha256/<ab>/<digest>} blobs; {@code refs/<browser>/<platform>-<arch>/<version>}
+ * names the blob for a driver version. A per-process cache directory is materialised from the store with a hard
+ * link, or a copy when the store is on another file system, so a store hit costs no download and usually no data
+ * copy. The store is opt-in ({@code store.enabled}).
+ */
+@Slf4j
+public class DriverStore {
+
+    private DriverStore() {
+
+    }
+
+    public static boolean isEnabled() {
+        return Config.getBoolean("store.enabled", false) && !"".equals(Config.getString("store.dir", ""));
+    }
+
+    public static File getRoot() {
+        return new File(Config.getString("store.dir", ""));
+    }
+
+    /**
+     * Links the stored driver for {@code key} into {@code directory}.
+     *
+     * @return the materialised driver, or {@code new File("")} when the store does not have it
+     */
+    public static File materialize(String key, File directory) {
+        if (!isEnabled()) {
+            return new File("");
+        }
+        File ref = getRef(key);
+        Ref entry = readRef(ref);
+        if (Objects.isNull(entry)) {
+            return new File("");
+        }
+        File blob = getBlob(entry.sha256);
+        if (!blob.isFile() || blob.length() != entry.length) {
+            log.warn("stored driver for {} is missing or damaged: {}", key, blob);
+            return new File("");
+        }
+        File target = new File(directory, entry.name);
+        try {
+            FileUtils.forceMkdir(directory);
+            link(blob, target);
+            ref.setLastModified(System.currentTimeMillis());
+            Integrity.record(target, entry.sha256);
+            log.info("materialised {} from the driver store: {}", key, target);
+            return target;
+        } catch (IOException e) {
+            log.warn("unable to materialise {} from the driver store: {}", key, e.toString());
+            FileUtils.deleteQuietly(target);
+            return new File("");
+        }
+    }
+
+    /**
+     * Adds a verified driver to the store under {@code key}. When the blob is new and on the same file system the
+     * driver itself becomes the blob through a hard link; an existing blob replaces the local copy with a link.
+     * A driver recorded as unverified stays out of the store.
+     */
+    public static void publish(String key, File driver, String sha256) {
+        if (!isEnabled() || Objects.isNull(sha256) || !driver.isFile() || !Integrity.isVerified(driver)) {
+            return;
+        }
+        File blob = getBlob(sha256);
+        try {
+            FileUtils.forceMkdir(blob.getParentFile());
+            if (!blob.isFile()) {
+                File tmp = new File(blob.getPath() + "." + UUID.randomUUID() + ".tmp");
+                try {
+                    try {
+                        Files.createLink(tmp.toPath(), driver.toPath());
+                    } catch (IOException | UnsupportedOperationException e) {
+                        Files.copy(driver.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    tmp.setExecutable(true, false);
+                    tmp.setReadable(true, false);
+                    tmp.setWritable(false, false);
+                    Helper.moveAtomically(tmp, blob);
+                } finally {
+                    FileUtils.deleteQuietly(tmp);
+                }
+            } else if (!Files.isSameFile(blob.toPath(), driver.toPath())) {
+                File local = new File(driver.getPath() + "." + UUID.randomUUID() + ".tmp");
+                link(blob, local);
+                Helper.moveAtomically(local, driver);
+                Integrity.record(driver, sha256);
+            }
+            writeRef(getRef(key), sha256, driver.getName(), blob.length());
+            log.debug("published {} to the driver store: {}", key, blob);
+        } catch (IOException e) {
+            log.warn("unable to publish {} to the driver store: {}", key, e.toString());
+        }
+    }
+
+    /**
+     * Removes refs unused for {@code cache.maxAgeDays} together with their blob, unless the blob is still linked
+     * from a cache directory. Caches only ever hold hard links or copies of a blob, never symbolic links, so the
+     * link count is all it takes to tell whether a blob is in use.
+     */
+    public static void collect() {
+        if (!isEnabled()) {
+            return;
+        }
+        File refs = new File(getRoot(), "refs");
+        if (!refs.isDirectory()) {
+            return;
+        }
+        long maxAge = TimeUnit.DAYS.toMillis(Config.getInt("cache.maxAgeDays", 30));
+        for (File ref : FileUtils.listFiles(refs, null, true)) {
+            if (System.currentTimeMillis() - ref.lastModified() < maxAge) {
+                continue;
+            }
+            Ref entry = readRef(ref);
+            File blob = Objects.isNull(entry) ? null : getBlob(entry.sha256);
+            if (!Objects.isNull(blob) && linkCount(blob) > 1) {
+                continue;
+            }
+            log.info("removing unused stored driver: {}", ref);
+            FileUtils.deleteQuietly(ref);
+            if (!Objects.isNull(blob)) {
+                FileUtils.deleteQuietly(blob);
+            }
+        }
+    }
+
+    private static void link(File blob, File target) throws IOException {
+        FileUtils.deleteQuietly(target);
+        try {
+            Files.createLink(target.toPath(), blob.toPath());
+            return;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("unable to hard link {}: {}", blob, e.toString());
+        }
+        Files.copy(blob.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        target.setExecutable(true, false);
+    }
+
+    private static int linkCount(File file) {
+        try {
+            return (Integer) Files.getAttribute(file.toPath(), "unix:nlink");
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return 1;
+        }
+    }
+
+    private static File getBlob(String sha256) {
+        String digest = sha256.toLowerCase();
+        return new File(getRoot(), "sha256" + File.separator + digest.substring(0, 2) + File.separator + digest);
+    }
+
+    private static File getRef(String key) {
+        return new File(getRoot(), "refs" + File.separator + key.replace('/', File.separatorChar));
+    }
+
+    private static Ref readRef(File ref) {
+        if (!ref.isFile()) {
+            return null;
+        }
+        try {
+            List<String> lines = FileUtils.readLines(ref, StandardCharsets.UTF_8);
+            if (lines.size() < 3 || !lines.get(0).matches("[0-9a-fA-F]{64}")) {
+                return null;
+            }
+            Ref entry = new Ref();
+            entry.sha256 = lines.get(0).trim();
+            entry.name = lines.get(1).trim();
+            entry.length = Long.parseLong(lines.get(2).trim());
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            log.debug("ignoring unreadable store ref {}: {}", ref, e.toString());
+            return null;
+        }
+    }
+
+    private static void writeRef(File ref, String sha256, String name, long length) throws IOException {
+        FileUtils.forceMkdir(ref.getParentFile());
+        File tmp = new File(ref.getPath() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            FileUtils.writeStringToFile(tmp, sha256 + "\n" + name + "\n" + length + "\n", StandardCharsets.UTF_8);
+            Helper.moveAtomically(tmp, ref);
+        } finally {
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+
+    private static class Ref {
+        private String sha256;
+        private String name;
+        private long length;
+    }
+}
@@ -3,19 +3,21 @@ package io.driver.utils;
 import io.driver.exception.ExecuteRuntimeCommandErrorException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.rauschig.jarchivelib.Archiver;
 import org.rauschig.jarchivelib.ArchiverFactory;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 
 @Slf4j
@@ -24,10 +26,20 @@ public class Helper {
 
     }
 
+    public static File getCacheRoot() {
+        String configured = Config.getString("cache.dir", "");
+        return "".equals(configured) ? new File(System.getProperty("java.io.tmpdir"), "webdriver") : new File(configured);
+    }
+
+    /**
+     * Lists the regular files below the path, leaving out hidden files and everything below a hidden directory:
+     * those are temporary files still being written.
+     */
     public static List<File> listFiles(String filePath) {
-        try {
-            return Files.walk(Paths.get(filePath))
-                    .filter(Files::isRegularFile)
+        Path root = Paths.get(filePath);
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(i -> !isHidden(root.relativize(i)))
                     .map(Path::toFile)
                     .collect(Collectors.toList());
         } catch (IOException e) {
@@ -36,6 +48,19 @@ public class Helper {
         return new ArrayList<>();
     }
 
+    private static boolean isHidden(Path relative) {
+        for (Path name : relative) {
+            if (name.toString().startsWith(".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @deprecated the caller has to drain, wait for and destroy the process, use {@link ProcessExecutor#execute}
+     */
+    @Deprecated
     public static Process exeRuntimeCommand(String command) {
         try {
             return Runtime.getRuntime().exec(command);
@@ -45,23 +70,45 @@ public class Helper {
         }
     }
 
+    /**
+     * Extracts the archive into a hidden sibling of the destination directory and then moves each entry in, so a
+     * reader of the destination only ever sees complete files.
+     */
     public static void unzip(File file, String destinationDir) {
         log.info("uncompressing file: {} to the directory: {}", file, destinationDir);
-        if (file.getName().endsWith(".tar.gz")) {
-            try {
-                Archiver archiver = ArchiverFactory.createArchiver("tar", "gz");
-                archiver.extract(file, new File(destinationDir));
-            } catch (IOException e) {
-                log.error(e.toString(), e);
+        File destination = new File(destinationDir).getAbsoluteFile();
+        File staging = new File(destination.getParentFile(), ".staging-" + UUID.randomUUID());
+        try (Metrics.Timer timer = Metrics.start(Metrics.Phase.EXTRACT, null, file.getName())) {
+            extract(file, staging);
+            File[] extracted = staging.listFiles();
+            if (extracted != null) {
+                for (File entry : extracted) {
+                    markExecutable(entry);
+                    moveAtomically(entry, new File(destination, entry.getName()));
+                }
             }
+            timer.bytes(file.length()).success();
+        } catch (IOException e) {
+            log.error(e.toString(), e);
+        } finally {
+            FileUtils.deleteQuietly(staging);
+        }
+    }
+
+    private static void extract(File file, File destination) throws IOException {
+        if (file.getName().endsWith(".tar.gz")) {
+            Archiver archiver = ArchiverFactory.createArchiver("tar", "gz");
+            archiver.extract(file, destination);
             return;
         }
-        try {
-            java.util.zip.ZipFile zipFile = new java.util.zip.ZipFile(file);
+        try (java.util.zip.ZipFile zipFile = new java.util.zip.ZipFile(file)) {
             Enumeration<? extends ZipEntry> entries = zipFile.entries();
             while (entries.hasMoreElements()) {
                 ZipEntry entry = entries.nextElement();
-                File entryDestination = new File(destinationDir, entry.getName());
+                File entryDestination = new File(destination, entry.getName());
+                if (!entryDestination.getCanonicalPath().startsWith(destination.getCanonicalPath() + File.separator)) {
+                    throw new IOException("zip entry is outside of the target directory: " + entry.getName());
+                }
                 if (entry.isDirectory()) {
                     entryDestination.mkdirs();
                 } else {
@@ -72,26 +119,49 @@ public class Helper {
                     }
                 }
             }
-        } catch (IOException e) {
-            log.error(e.toString(), e);
+        }
+    }
+
+    private static void markExecutable(File file) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    markExecutable(child);
+                }
+            }
+        } else if ("".equals(FilenameUtils.getExtension(file.getName()))) {
+            file.setExecutable(true, false);
+        }
+    }
+
+    public static void moveAtomically(File source, File target) throws IOException {
+        if (target.isDirectory()) {
+            FileUtils.deleteDirectory(target);
+        }
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
 
     public static void downloadFile(String url, File destination) {
+        downloadFile(url, destination, null);
+    }
+
+    public static void downloadFile(String url, File destination, String expectedSha256) {
         log.info("downloading driver: {} to directory: {}", url, destination.getParent());
-        try {
-            FileUtils.copyURLToFile(new URL(url), destination);
-        } catch (IOException e) {
-            log.error(e.toString(), e);
+        try (Metrics.Timer timer = Metrics.start(Metrics.Phase.DOWNLOAD, null, url)) {
+            Downloader.download(url, destination, expectedSha256);
+            timer.bytes(destination.length()).success();
         }
     }
 
     public static boolean urlConnectivity(String net) {
-        try {
-            HttpURLConnection connection = (HttpURLConnection) new URL(net).openConnection();
-            connection.setConnectTimeout(3000);
-            return connection.getResponseCode() == 200;
+        try (HttpTransport.Response response = HttpTransport.head(net, "mirror")) {
+            return response.getCode() == 200;
         } catch (IOException e) {
             log.error("the url: {} can not be connected", net);
             return false;
@@ -116,34 +186,28 @@ public class Helper {
     }
 
     public static String findBestMatchVersion(String currentVersion, Map<String, List<Integer>> versionList) {
-        if ("".equals(currentVersion)) {
-            throw new IllegalArgumentException("current version is empty");
-        }
         if (versionList.isEmpty()) {
             throw new IllegalArgumentException("version list is empty");
         }
-        int mainVersion = Integer.parseInt(currentVersion.split("\\.")[0]);
-        List<Integer> minList = versionList.values().stream().map(integers -> integers.get(0)).collect(Collectors.toList());
-        if (mainVersion < Collections.min(minList)) {
-            throw new IllegalArgumentException("the version number of the Firefox browser must be greater than or equal to 52");
+        return findBestMatchVersion(currentVersion, VersionRangeIndex.of(versionList));
+    }
+
+    public static String findBestMatchVersion(String currentVersion, VersionRangeIndex versionIndex) {
+        if ("".equals(currentVersion)) {
+            throw new IllegalArgumentException("current version is empty");
         }
-        Map<String, List<Integer>> filtered = versionList.entrySet().stream().filter(i -> {
-            List<Integer> values = i.getValue();
-            return mainVersion >= values.get(0) && mainVersion <= values.get(1);
-        }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-        if (filtered.isEmpty()){
-            return "";
+        if (versionIndex.isEmpty()) {
+            throw new IllegalArgumentException("version list is empty");
         }
-        Integer minSize = Collections.min(filtered.keySet().stream().map(i -> i.split("\\.").length).collect(Collectors.toList()));
-        Set<String> allVersions = new HashSet<>(filtered.keySet());
-        for (int i = 0; i < minSize; i++) {
-            int var = i;
-            Integer max = Collections.max(allVersions.stream().map(j -> Integer.parseInt(j.split("\\.")[var])).collect(Collectors.toList()));
-            List<String> newList = allVersions.stream().filter(j -> j.split("\\.")[var].equals(String.valueOf(max))).collect(Collectors.toList());
-            allVersions.clear();
-            allVersions.addAll(newList);
+        try (Metrics.Timer timer = Metrics.start(Metrics.Phase.MATCH)) {
+            long mainVersion = Version.parseMajor(currentVersion);
+            if (mainVersion < versionIndex.lowest()) {
+                throw new IllegalArgumentException("the version number of the Firefox browser must be greater than or equal to 52");
+            }
+            String version = versionIndex.newestFor(mainVersion);
+            timer.success();
+            return version;
         }
-        return allVersions.iterator().next();
     }
 
     public static String findBestMatchVersion(String currentVersion, List<String> versionList) {
@@ -153,38 +217,10 @@ public class Helper {
         if (versionList.isEmpty()) {
             throw new IllegalArgumentException("version list is empty");
         }
-        List<String> mainVersions = versionList.stream().filter(i -> i.split("\\.")[0].equals(currentVersion.split("\\.")[0])).collect(Collectors.toList());
-        if (mainVersions.isEmpty()) {
-            return "";
-        }
-        List<Long> subList = Arrays.stream(currentVersion.split("\\.")).map(Long::parseLong).collect(Collectors.toList());
-        for (int i = 0; i < subList.size(); i++) {
-            long mainIndex = subList.get(i);
-            List<String> equals = new ArrayList<>();
-            List<String> others = new ArrayList<>();
-            for (String s : versionList) {
-                long versionIndex = Long.parseLong(s.split("\\.")[i]);
-                if (versionIndex == mainIndex) {
-                    equals.add(s);
-                } else {
-                    others.add(s);
-                }
-            }
-
-            if (!equals.isEmpty()) {
-                versionList = equals;
-            } else {
-                int va = i;
-                Long max = others.stream().map(m -> Long.parseLong(m.split("\\.")[va])).max(Comparator.naturalOrder()).orElseThrow(() -> new NoSuchElementException("No value present"));
-                versionList = others.stream().filter(b -> {
-                    Long factor = Long.parseLong(b.split("\\.")[va]);
-                    return factor.equals(max);
-                }).collect(Collectors.toList());
-            }
-
+        try (Metrics.Timer timer = Metrics.start(Metrics.Phase.MATCH)) {
+            String version = VersionCatalog.bestMatch(versionList, Version.parse(currentVersion));
+            timer.success();
+            return version;
         }
-        return versionList.isEmpty() ? "" : versionList.get(0);
     }
-
-
 }
@@ -0,0 +1,267 @@
+package io.driver.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The single HTTP transport used for listings, probes and downloads. Responses are released by draining and
+ * closing their body instead of disconnecting, so the JDK keep-alive cache hands the same socket, and TLS session,
+ * to the next request for that host. Timeouts are read per profile ({@code <profile>.connectTimeout},
+ * {@code .readTimeout}, {@code .totalTimeout}) with {@code http.*} as default; the total timeout aborts the exchange
+ * however slowly the bytes trickle in, and a body shorter than its Content-Length is an error rather than a silently
+ * truncated read. Gzip is requested unless the caller sets its own {@code Accept-Encoding}. The keep-alive cache holds 5 idle connections per host unless the JVM
+ * is started with {@code -Dhttp.maxConnections=<n>}; that property is the application's to set, not this library's.
+ */
+@Slf4j
+public class HttpTransport {
+    private static final int drainLimit = 64 * 1024;
+    private static final ScheduledExecutorService deadlines;
+
+    static {
+        deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "driver-http-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private HttpTransport() {
+
+    }
+
+    public static Response get(String url, String profile) throws IOException {
+        return execute("GET", url, profile, Collections.emptyMap());
+    }
+
+    public static Response get(String url, String profile, Map<String, String> headers) throws IOException {
+        return execute("GET", url, profile, headers);
+    }
+
+    public static Response head(String url, String profile) throws IOException {
+        return execute("HEAD", url, profile, Collections.emptyMap());
+    }
+
+    public static Response execute(String method, String url, String profile, Map<String, String> headers) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeout(profile, "connectTimeout", 10000));
+        connection.setReadTimeout(timeout(profile, "readTimeout", 30000));
+        connection.setInstanceFollowRedirects(true);
+        if (!headers.containsKey("Accept-Encoding")) {
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+        }
+        headers.forEach(connection::setRequestProperty);
+        Deadline deadline = new Deadline(timeout(profile, "totalTimeout", 0));
+        if (deadline.millis > 0) {
+            deadline.future = deadlines.schedule(() -> {
+                log.warn("aborting request after {} ms: {}", deadline.millis, url);
+                // a read in progress on a kept alive socket may survive the disconnect, the body checks the flag too
+                deadline.expired = true;
+                connection.disconnect();
+            }, deadline.millis, TimeUnit.MILLISECONDS);
+        }
+        try {
+            return new Response(connection, connection.getResponseCode(), deadline);
+        } catch (IOException | RuntimeException e) {
+            deadline.cancel();
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    private static int timeout(String profile, String name, int defaultValue) {
+        return Config.getInt(profile + "." + name, Config.getInt("http." + name, defaultValue));
+    }
+
+    public static class Response implements Closeable {
+        private final HttpURLConnection connection;
+        private final int code;
+        private final Deadline deadline;
+        private Body body;
+
+        private Response(HttpURLConnection connection, int code, Deadline deadline) {
+            this.connection = connection;
+            this.code = code;
+            this.deadline = deadline;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public String getHeader(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return connection.getHeaderFields();
+        }
+
+        public long getContentLength() {
+            return connection.getContentLengthLong();
+        }
+
+        /**
+         * The decoded body; closing it is optional, {@link #close()} releases it either way. Reads fail with a
+         * {@link SocketTimeoutException} once the total timeout has passed and with an {@link EOFException} when the
+         * body ends before its Content-Length.
+         */
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream raw = code >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream() : connection.getInputStream();
+                if (raw == null) {
+                    raw = new ByteArrayInputStream(new byte[0]);
+                }
+                raw = new Guarded(raw, connection, deadline, connection.getContentLengthLong());
+                body = new Body("gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(raw) : raw);
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            deadline.cancel();
+            if ("HEAD".equals(connection.getRequestMethod()) || code == HttpURLConnection.HTTP_NOT_MODIFIED || code == HttpURLConnection.HTTP_NO_CONTENT) {
+                return;
+            }
+            if (deadline.expired) {
+                connection.disconnect();
+                return;
+            }
+            try {
+                Body in = (Body) getBody();
+                if (in.closed) {
+                    return;
+                }
+                long drained = IOUtils.skip(in, drainLimit);
+                if (drained == drainLimit && in.read() != -1) {
+                    connection.disconnect();
+                    return;
+                }
+                in.close();
+            } catch (IOException e) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static class Deadline {
+        private final int millis;
+        private volatile boolean expired;
+        private volatile ScheduledFuture<?> future;
+
+        private Deadline(int millis) {
+            this.millis = millis;
+        }
+
+        private void cancel() {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * The raw body: counts the bytes against the Content-Length and gives up once the total timeout has passed,
+     * closing the stream itself instead of handing a half read connection back to the keep-alive cache.
+     */
+    private static class Guarded extends FilterInputStream {
+        private final HttpURLConnection connection;
+        private final Deadline deadline;
+        private final long expected;
+        private long count;
+
+        private Guarded(InputStream in, HttpURLConnection connection, Deadline deadline, long expected) {
+            super(in);
+            this.connection = connection;
+            this.deadline = deadline;
+            this.expected = expected;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkDeadline();
+            int read;
+            try {
+                read = super.read(b, off, len);
+            } catch (IOException e) {
+                checkDeadline();
+                throw e;
+            }
+            checkDeadline();
+            if (read == -1) {
+                if (expected >= 0 && count < expected) {
+                    abort();
+                    throw new EOFException("body ended after " + count + " of " + expected + " bytes: " + connection.getURL());
+                }
+                return -1;
+            }
+            count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        private void checkDeadline() throws SocketTimeoutException {
+            if (deadline.expired) {
+                abort();
+                throw new SocketTimeoutException("total timeout of " + deadline.millis + " ms exceeded: " + connection.getURL());
+            }
+        }
+
+        private void abort() {
+            IOUtils.closeQuietly(in);
+            connection.disconnect();
+        }
+    }
+
+    private static class Body extends FilterInputStream {
+        private boolean closed;
+
+        private Body(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
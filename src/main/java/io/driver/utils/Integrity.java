@@ -0,0 +1,247 @@
+package io.driver.utils;
+
+import com.google.common.io.BaseEncoding;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.driver.exception.IntegrityCheckFailedException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Digest checks for downloaded drivers. Archives are compared with a pinned SHA-256 from the configuration
+ * and with the MD5 the storage server publishes ({@code Content-MD5} / {@code x-goog-hash}). The SHA-256 of
+ * every downloaded driver is kept in a {@code .verified.json} manifest in its version directory, so a cached
+ * driver whose size and mtime still match is trusted without being hashed again. A driver whose archive had no
+ * digest to compare against is recorded as unverified: it is still checked for changes, but never published to
+ * the shared store, and with {@code integrity.requireDigest=true} it is not downloaded or trusted at all. The
+ * manifest also keeps the {@code <platform>-<arch>} a driver was resolved for, as the cache directory does not.
+ */
+@Slf4j
+public class Integrity {
+    private static final String manifestName = ".verified.json";
+    private static final Gson gson = new Gson();
+    private static final Type manifestType = new TypeToken<Map<String, Entry>>() {
+    }.getType();
+
+    private Integrity() {
+
+    }
+
+    public static MessageDigest sha256() {
+        return digest("SHA-256");
+    }
+
+    public static MessageDigest md5() {
+        return digest("MD5");
+    }
+
+    public static String hex(byte[] digest) {
+        return BaseEncoding.base16().lowerCase().encode(digest);
+    }
+
+    /**
+     * @return whether a pinned or published digest was compared, false when there was none to compare against
+     */
+    public static boolean verifyArchive(String url, HttpTransport.Response response, byte[] sha256, byte[] md5, String expectedSha256) {
+        boolean pinned = !Objects.isNull(expectedSha256) && !"".equals(expectedSha256);
+        if (pinned && !expectedSha256.equalsIgnoreCase(hex(sha256))) {
+            throw new IntegrityCheckFailedException("sha256 mismatch for " + url + ", expected: " + expectedSha256 + ", actual: " + hex(sha256));
+        }
+        String publishedMd5 = publishedMd5(response);
+        if (!Objects.isNull(publishedMd5) && !publishedMd5.equals(BaseEncoding.base64().encode(md5))) {
+            throw new IntegrityCheckFailedException("md5 mismatch for " + url + ", published: " + publishedMd5 + ", actual: " + BaseEncoding.base64().encode(md5));
+        }
+        boolean verified = pinned || !Objects.isNull(publishedMd5);
+        if (!verified) {
+            checkUnverifiedAllowed(url);
+        }
+        return verified;
+    }
+
+    /**
+     * Fails when {@code integrity.requireDigest} is set, for a download there is no digest to check against.
+     */
+    public static void checkUnverifiedAllowed(String url) {
+        if (Config.getBoolean("integrity.requireDigest", false)) {
+            throw new IntegrityCheckFailedException("no pinned or published digest to verify " + url + ", pin one with checksum.<browser>.<version>.<archive>");
+        }
+        log.warn("no pinned or published digest for {}, the driver is recorded as unverified", url);
+    }
+
+    private static String publishedMd5(HttpTransport.Response response) {
+        String contentMd5 = response.getHeader("Content-MD5");
+        if (!Objects.isNull(contentMd5)) {
+            return contentMd5.trim();
+        }
+        for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+            if (!"x-goog-hash".equalsIgnoreCase(header.getKey())) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                for (String part : value.split(",")) {
+                    String trimmed = part.trim();
+                    if (trimmed.startsWith("md5=")) {
+                        return trimmed.substring(4);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records a driver whose digest was checked against a pinned or published one.
+     */
+    public static void record(File driver, String sha256) {
+        record(driver, sha256, true);
+    }
+
+    /**
+     * Records a driver downloaded without any digest to check it against.
+     */
+    public static void recordUnverified(File driver, String sha256) {
+        record(driver, sha256, false);
+    }
+
+    private static void record(File driver, String sha256, boolean verified) {
+        Entry entry = new Entry();
+        entry.sha256 = sha256;
+        entry.length = driver.length();
+        entry.lastModified = driver.lastModified();
+        entry.verified = verified;
+        write(driver, entry);
+    }
+
+    /**
+     * Records the {@code <platform>-<arch>} a recorded driver was resolved for.
+     */
+    public static void recordTarget(File driver, String target) {
+        synchronized (Integrity.class) {
+            Entry entry = readManifest(new File(driver.getParentFile(), manifestName)).get(driver.getName());
+            if (Objects.isNull(entry)) {
+                log.warn("no recorded digest for {}, not recording its target", driver);
+                return;
+            }
+            entry.target = target;
+            write(driver, entry);
+        }
+    }
+
+    /**
+     * @return whether the driver was recorded as resolved for {@code target}, false for drivers recorded without one
+     */
+    public static boolean isTarget(File driver, String target) {
+        Entry entry = readManifest(new File(driver.getParentFile(), manifestName)).get(driver.getName());
+        return !Objects.isNull(entry) && target.equals(entry.target);
+    }
+
+    private static void write(File driver, Entry entry) {
+        File manifest = new File(driver.getParentFile(), manifestName);
+        synchronized (Integrity.class) {
+            Map<String, Entry> entries = readManifest(manifest);
+            entries.put(driver.getName(), entry);
+            File tmp = new File(manifest.getPath() + "." + UUID.randomUUID() + ".tmp");
+            try {
+                FileUtils.writeStringToFile(tmp, gson.toJson(entries, manifestType), StandardCharsets.UTF_8);
+                Helper.moveAtomically(tmp, manifest);
+            } catch (IOException e) {
+                log.warn("unable to write verification manifest: {}", e.toString());
+                FileUtils.deleteQuietly(tmp);
+            }
+        }
+    }
+
+    /**
+     * @return the SHA-256 recorded for the driver, or null when it has not been recorded
+     */
+    public static String recordedSha256(File driver) {
+        Entry entry = readManifest(new File(driver.getParentFile(), manifestName)).get(driver.getName());
+        return Objects.isNull(entry) ? null : entry.sha256;
+    }
+
+    /**
+     * @return whether the driver was recorded after its digest was checked against a pinned or published one
+     */
+    public static boolean isVerified(File driver) {
+        Entry entry = readManifest(new File(driver.getParentFile(), manifestName)).get(driver.getName());
+        return !Objects.isNull(entry) && entry.verified;
+    }
+
+    /**
+     * A driver is trusted only while it matches the digest recorded when it was downloaded; a file without a
+     * manifest entry was not placed by a download, so it is rejected rather than recorded as it is. An unverified
+     * driver is rejected too when {@code integrity.requireDigest} is set.
+     */
+    public static boolean isTrusted(File driver) {
+        Map<String, Entry> entries = readManifest(new File(driver.getParentFile(), manifestName));
+        Entry entry = entries.get(driver.getName());
+        if (Objects.isNull(entry)) {
+            log.warn("no recorded digest for {}, not trusting it", driver);
+            return false;
+        }
+        if (!entry.verified && Config.getBoolean("integrity.requireDigest", false)) {
+            log.warn("{} was downloaded without a digest to verify it, not trusting it", driver);
+            return false;
+        }
+        if (entry.length == driver.length() && entry.lastModified == driver.lastModified()) {
+            return true;
+        }
+        String actual;
+        try (Metrics.Timer timer = Metrics.start(Metrics.Phase.VERIFY, null, driver.getName())) {
+            actual = Downloader.sha256(driver);
+            timer.bytes(driver.length()).success();
+        } catch (IOException e) {
+            log.warn("unable to hash {}: {}", driver, e.toString());
+            return false;
+        }
+        if (entry.sha256.equalsIgnoreCase(actual)) {
+            entry.length = driver.length();
+            entry.lastModified = driver.lastModified();
+            write(driver, entry);
+            return true;
+        }
+        log.warn("digest of {} changed since it was verified, expected: {}, actual: {}", driver, entry.sha256, actual);
+        return false;
+    }
+
+    private static Map<String, Entry> readManifest(File manifest) {
+        if (!manifest.isFile()) {
+            return new HashMap<>();
+        }
+        try {
+            Map<String, Entry> entries = gson.fromJson(FileUtils.readFileToString(manifest, StandardCharsets.UTF_8), manifestType);
+            return Objects.isNull(entries) ? new HashMap<>() : entries;
+        } catch (IOException | RuntimeException e) {
+            log.warn("ignoring unreadable verification manifest: {}", manifest);
+            return new HashMap<>();
+        }
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entry {
+        private String sha256;
+        private long length;
+        private long lastModified;
+        private boolean verified;
+        private String target;
+    }
+}
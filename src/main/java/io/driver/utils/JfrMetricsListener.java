@@ -0,0 +1,78 @@
+package io.driver.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Commits a JFR event for every resolution phase and cache lookup; enabled with {@code metrics.jfr=true}.
+ * Needs {@code jdk.jfr}, i.e. JDK 8u262 or 11+. Only {@link Metrics} loads it, reflectively, so a JDK 8 build without
+ * JFR can leave it out ({@code mvn -DskipJfr}).
+ */
+class JfrMetricsListener implements MetricsListener {
+
+    @Override
+    public void onPhase(Metrics.PhaseEvent event) {
+        PhaseEvent jfrEvent = new PhaseEvent();
+        if (!jfrEvent.isEnabled()) {
+            return;
+        }
+        jfrEvent.phase = event.getPhase().name();
+        jfrEvent.browser = event.getBrowser();
+        jfrEvent.detail = event.getDetail();
+        jfrEvent.elapsed = event.getNanos();
+        jfrEvent.bytes = event.getBytes();
+        jfrEvent.success = event.isSuccess();
+        jfrEvent.commit();
+    }
+
+    @Override
+    public void onCache(String browser, Metrics.Cache cache, boolean hit) {
+        CacheEvent jfrEvent = new CacheEvent();
+        if (!jfrEvent.isEnabled()) {
+            return;
+        }
+        jfrEvent.cache = cache.name();
+        jfrEvent.browser = browser;
+        jfrEvent.hit = hit;
+        jfrEvent.commit();
+    }
+
+    @Name("io.driver.Phase")
+    @Label("Driver Resolution Phase")
+    @Category("Auto WebDriver")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Browser")
+        String browser;
+        @Label("Detail")
+        String detail;
+        @Label("Phase Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("io.driver.Cache")
+    @Label("Driver Cache Lookup")
+    @Category("Auto WebDriver")
+    @StackTrace(false)
+    static class CacheEvent extends Event {
+        @Label("Cache")
+        String cache;
+        @Label("Browser")
+        String browser;
+        @Label("Hit")
+        boolean hit;
+    }
+}
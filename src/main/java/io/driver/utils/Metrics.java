@@ -0,0 +1,314 @@
+package io.driver.utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers and counters for the phases of driver resolution. Every phase is aggregated in memory
+ * ({@link #snapshot()}) and passed to the registered {@link MetricsListener}s; {@code metrics.jfr} adds a listener
+ * that commits JFR events. A {@link Phase#CONFIGURE} timer also marks its thread as resolving that browser, so the
+ * nested timers of the shared download and listing code are attributed to it.
+ */
+@Slf4j
+public class Metrics {
+    private static final ThreadLocal<String> currentBrowser = new ThreadLocal<>();
+    private static final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+    private static final Map<Phase, PhaseStats> phases = new EnumMap<>(Phase.class);
+    private static final Map<Cache, CacheStats> caches = new EnumMap<>(Cache.class);
+
+    static {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new PhaseStats());
+        }
+        for (Cache cache : Cache.values()) {
+            caches.put(cache, new CacheStats());
+        }
+        for (MetricsListener listener : ServiceLoader.load(MetricsListener.class)) {
+            listeners.add(listener);
+        }
+        if (Config.getBoolean("metrics.jfr", false)) {
+            try {
+                Class.forName("jdk.jfr.Event");
+                listeners.add((MetricsListener) Class.forName("io.driver.utils.JfrMetricsListener").getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.warn("JFR events are not available: {}", e.toString());
+            }
+        }
+    }
+
+    private Metrics() {
+
+    }
+
+    public enum Phase {
+        /** a whole configure() call */
+        CONFIGURE,
+        /** detecting the installed browser version */
+        PROBE,
+        /** requesting a version listing, until the response headers arrive */
+        LISTING,
+        /** reading and parsing a version listing */
+        PARSE,
+        /** picking the driver version for the browser */
+        MATCH,
+        /** transferring a driver archive, including the extraction when it is streamed */
+        DOWNLOAD,
+        /** unpacking a downloaded archive or a bundled driver */
+        EXTRACT,
+        /** digest checks of archives and cached drivers */
+        VERIFY
+    }
+
+    public enum Cache {
+        /** the browser is unchanged since the recorded resolution */
+        FINGERPRINT,
+        /** the driver is in the cache directory */
+        LOCAL,
+        /** the driver is in the shared driver store */
+        STORE,
+        /** the driver is in the offline bundle */
+        BUNDLE,
+        /** the version listing is fresh or not modified */
+        INDEX
+    }
+
+    public static void addListener(MetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(MetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    public static Timer start(Phase phase) {
+        return new Timer(phase, currentBrowser.get(), null);
+    }
+
+    public static Timer start(Phase phase, String browser) {
+        return new Timer(phase, browser, null);
+    }
+
+    public static Timer start(Phase phase, String browser, String detail) {
+        return new Timer(phase, Objects.isNull(browser) ? currentBrowser.get() : browser, detail);
+    }
+
+    public static void cache(Cache cache, boolean hit) {
+        cache(cache, currentBrowser.get(), hit);
+    }
+
+    public static void cache(Cache cache, String browser, boolean hit) {
+        (hit ? caches.get(cache).hits : caches.get(cache).misses).increment();
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onCache(browser, cache, hit);
+            } catch (RuntimeException e) {
+                log.warn("metrics listener failed: {}", e.toString());
+            }
+        }
+    }
+
+    public static Map<Phase, PhaseStats> snapshot() {
+        Map<Phase, PhaseStats> snapshot = new EnumMap<>(Phase.class);
+        phases.forEach((phase, stats) -> snapshot.put(phase, stats.copy()));
+        return snapshot;
+    }
+
+    public static Map<Cache, CacheStats> cacheSnapshot() {
+        Map<Cache, CacheStats> snapshot = new EnumMap<>(Cache.class);
+        caches.forEach((cache, stats) -> snapshot.put(cache, stats.copy()));
+        return snapshot;
+    }
+
+    public static void reset() {
+        phases.values().forEach(PhaseStats::reset);
+        caches.values().forEach(CacheStats::reset);
+    }
+
+    private static void record(PhaseEvent event) {
+        PhaseStats stats = phases.get(event.phase);
+        stats.count.increment();
+        stats.totalNanos.add(event.nanos);
+        stats.maxNanos.accumulate(event.nanos);
+        stats.bytes.add(event.bytes);
+        if (!event.success) {
+            stats.failures.increment();
+        }
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onPhase(event);
+            } catch (RuntimeException e) {
+                log.warn("metrics listener failed: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * A running phase, recorded when closed. It counts as failed unless {@link #success()} was called.
+     */
+    public static class Timer implements AutoCloseable {
+        private final Phase phase;
+        private final String browser;
+        private final String detail;
+        private final String previousBrowser;
+        private final long start = System.nanoTime();
+        private long bytes;
+        private boolean success;
+        private boolean closed;
+
+        private Timer(Phase phase, String browser, String detail) {
+            this.phase = phase;
+            this.browser = browser;
+            this.detail = detail;
+            this.previousBrowser = currentBrowser.get();
+            if (phase == Phase.CONFIGURE) {
+                currentBrowser.set(browser);
+            }
+        }
+
+        public Timer bytes(long bytes) {
+            this.bytes += bytes;
+            return this;
+        }
+
+        public Timer success() {
+            success = true;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (phase == Phase.CONFIGURE) {
+                if (Objects.isNull(previousBrowser)) {
+                    currentBrowser.remove();
+                } else {
+                    currentBrowser.set(previousBrowser);
+                }
+            }
+            record(new PhaseEvent(phase, browser, detail, System.nanoTime() - start, bytes, success));
+        }
+    }
+
+    @Getter
+    public static class PhaseEvent {
+        private final Phase phase;
+        private final String browser;
+        private final String detail;
+        private final long nanos;
+        private final long bytes;
+        private final boolean success;
+
+        PhaseEvent(Phase phase, String browser, String detail, long nanos, long bytes, boolean success) {
+            this.phase = phase;
+            this.browser = browser;
+            this.detail = detail;
+            this.nanos = nanos;
+            this.bytes = bytes;
+            this.success = success;
+        }
+    }
+
+    public static class PhaseStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder bytes = new LongAdder();
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos.sum());
+        }
+
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * @return bytes per second over the time spent in the phase
+         */
+        public long getThroughput() {
+            long nanos = totalNanos.sum();
+            return nanos == 0 ? 0 : (long) (bytes.sum() * 1e9 / nanos);
+        }
+
+        private PhaseStats copy() {
+            PhaseStats copy = new PhaseStats();
+            copy.count.add(count.sum());
+            copy.failures.add(failures.sum());
+            copy.totalNanos.add(totalNanos.sum());
+            copy.maxNanos.accumulate(maxNanos.get());
+            copy.bytes.add(bytes.sum());
+            return copy;
+        }
+
+        private void reset() {
+            count.reset();
+            failures.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            bytes.reset();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + getCount() + ", failures=" + getFailures() + ", total=" + getTotalMillis() + "ms, max=" + getMaxMillis()
+                    + "ms" + (getBytes() > 0 ? ", bytes=" + getBytes() + ", throughput=" + getThroughput() + "B/s" : "");
+        }
+    }
+
+    public static class CacheStats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public double getHitRatio() {
+            long total = getHits() + getMisses();
+            return total == 0 ? 0 : (double) getHits() / total;
+        }
+
+        private CacheStats copy() {
+            CacheStats copy = new CacheStats();
+            copy.hits.add(getHits());
+            copy.misses.add(getMisses());
+            return copy;
+        }
+
+        private void reset() {
+            hits.reset();
+            misses.reset();
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + getHits() + ", misses=" + getMisses();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.driver.utils;
+
+/**
+ * Receives the timings and cache lookups of driver resolution, e.g. to forward them to Micrometer. Register an
+ * implementation with {@link Metrics#addListener(MetricsListener)} or list it in
+ * {@code META-INF/services/io.driver.utils.MetricsListener}. Callbacks run on the resolving thread and must not block.
+ */
+public interface MetricsListener {
+
+    void onPhase(Metrics.PhaseEvent event);
+
+    default void onCache(String browser, Metrics.Cache cache, boolean hit) {
+    }
+}
@@ -0,0 +1,389 @@
+package io.driver.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Picks between equivalent endpoints (the primary download sites and npmmirror). Every request made by the
+ * downloaders reports its latency or failure here; per host an exponentially weighted latency and error rate
+ * are kept in memory and flushed to {@code mirror-scores.json} under the cache root {@code mirror.flushSeconds}
+ * after the first unsaved change and at shutdown, merged per host with what other processes wrote meanwhile, so
+ * the ranking survives restarts.
+ * {@link #rank(List)} orders candidates by that score, {@link #race(List)} probes them happy-eyeballs style:
+ * the best ranked first, the next one after {@code mirror.raceDelayMillis} or as soon as the previous failed,
+ * and the first that answers wins. {@link #first(List)} picks between alternatives that may not exist (the archive
+ * names a driver may be published under): all of them are probed at once and the most preferred one that exists wins.
+ */
+@Slf4j
+public class MirrorSelector {
+    private static final String scoresName = "mirror-scores.json";
+    private static final double alpha = 0.3;
+    private static final Gson gson = new Gson();
+    private static final Type scoresType = new TypeToken<Map<String, Score>>() {
+    }.getType();
+    private static Map<String, Score> scores;
+    private static ScheduledExecutorService flusher;
+    private static ScheduledFuture<?> pendingFlush;
+    private static boolean dirty;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(MirrorSelector::flush, "mirror-scores-flush"));
+    }
+
+    private MirrorSelector() {
+
+    }
+
+    public static List<String> rank(List<String> urls) {
+        List<String> candidates = new ArrayList<>();
+        for (String url : urls) {
+            if (!Objects.isNull(url) && !"".equals(url) && !candidates.contains(url)) {
+                candidates.add(url);
+            }
+        }
+        long now = System.currentTimeMillis();
+        Map<String, Double> costs = new HashMap<>();
+        synchronized (MirrorSelector.class) {
+            for (String url : candidates) {
+                costs.put(url, cost(scores().get(host(url)), now));
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(costs::get));
+        return candidates;
+    }
+
+    public static String race(List<String> urls) {
+        List<String> ranked = rank(urls);
+        if (ranked.size() <= 1) {
+            return ranked.isEmpty() ? null : ranked.get(0);
+        }
+        if (recentlyHealthy(ranked.get(0))) {
+            return ranked.get(0);
+        }
+        long delay = Config.getInt("mirror.raceDelayMillis", 250);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Config.getInt("mirror.timeoutMillis", 5000));
+        CompletionService<String> completionService = new ExecutorCompletionService<>(AsyncExecutor.io());
+        List<Future<String>> futures = new ArrayList<>();
+        int next = 0;
+        int pending = 0;
+        try {
+            while (pending > 0 || next < ranked.size()) {
+                if (next < ranked.size()) {
+                    String url = ranked.get(next++);
+                    futures.add(completionService.submit(() -> reachable(url) ? url : null));
+                    pending++;
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    break;
+                }
+                Future<String> completed = completionService.poll(next < ranked.size() ? Math.min(delay, remaining) : remaining, TimeUnit.MILLISECONDS);
+                if (completed == null) {
+                    continue;
+                }
+                pending--;
+                String winner = result(completed);
+                if (!Objects.isNull(winner)) {
+                    log.debug("mirror race won by: {}", winner);
+                    return winner;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            futures.forEach(i -> i.cancel(true));
+        }
+        log.warn("none of the mirrors answered in time, using: {}", ranked.get(0));
+        return ranked.get(0);
+    }
+
+    /**
+     * @param alternatives in order of preference, each given by its equivalent mirror urls
+     * @return the url of the most preferred alternative that exists, the first url when the probes didn't get an
+     * answer in time, or null when every mirror answered that none of them exists
+     */
+    public static String first(List<List<String>> alternatives) {
+        if (alternatives.size() == 1) {
+            return race(alternatives.get(0));
+        }
+        List<List<String>> ranked = alternatives.stream().map(MirrorSelector::rank).collect(Collectors.toList());
+        Map<String, Boolean> answers = new HashMap<>();
+        Set<String> done = new HashSet<>();
+        CompletionService<String> completionService = new ExecutorCompletionService<>(AsyncExecutor.io());
+        List<Future<String>> futures = new ArrayList<>();
+        ranked.forEach(urls -> urls.forEach(url -> futures.add(completionService.submit(() -> {
+            Boolean exists = exists(url);
+            synchronized (answers) {
+                answers.put(url, exists);
+            }
+            return url;
+        }))));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Config.getInt("mirror.timeoutMillis", 5000));
+        try {
+            for (int pending = futures.size(); pending > 0; pending--) {
+                long remaining = deadline - System.nanoTime();
+                Future<String> completed = remaining > 0 ? completionService.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (completed == null) {
+                    break;
+                }
+                done.add(result(completed));
+                synchronized (answers) {
+                    for (List<String> urls : ranked) {
+                        Optional<String> found = urls.stream().filter(i -> Boolean.TRUE.equals(answers.get(i))).findFirst();
+                        if (found.isPresent()) {
+                            log.debug("driver archive found at: {}", found.get());
+                            return found.get();
+                        }
+                        if (!done.containsAll(urls)) {
+                            break;
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            futures.forEach(i -> i.cancel(true));
+        }
+        synchronized (answers) {
+            if (answers.size() == futures.size() && answers.values().stream().allMatch(Boolean.FALSE::equals)) {
+                return null;
+            }
+        }
+        log.warn("not every driver archive could be probed in time, using: {}", ranked.get(0).get(0));
+        return ranked.get(0).get(0);
+    }
+
+    private static String result(Future<String> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException | CancellationException e) {
+            log.debug("mirror probe failed: {}", e.toString());
+            return null;
+        }
+    }
+
+    public static void recordSuccess(String url, long latencyMillis) {
+        update(url, latencyMillis, false);
+    }
+
+    public static void recordFailure(String url) {
+        update(url, 0, true);
+    }
+
+    public static void reset() {
+        synchronized (MirrorSelector.class) {
+            scores = new HashMap<>();
+            dirty = false;
+            FileUtils.deleteQuietly(getScoresFile());
+        }
+    }
+
+    /**
+     * Writes the unsaved scores, keeping per host whichever of ours and the one on disk was updated last.
+     */
+    public static void flush() {
+        String json;
+        synchronized (MirrorSelector.class) {
+            if (!Objects.isNull(pendingFlush)) {
+                pendingFlush.cancel(false);
+                pendingFlush = null;
+            }
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            json = gson.toJson(scores(), scoresType);
+        }
+        Map<String, Score> ours = gson.fromJson(json, scoresType);
+        File file = getScoresFile();
+        Map<String, Score> merged;
+        CacheLock lock = CacheLock.acquire(new File(file.getParentFile(), FilenameUtils.getBaseName(file.getName())));
+        try {
+            merged = load();
+            ours.forEach((host, score) -> merged.merge(host, score, MirrorSelector::newer));
+            save(merged);
+        } finally {
+            lock.close();
+        }
+        synchronized (MirrorSelector.class) {
+            Map<String, Score> current = scores();
+            merged.forEach((host, score) -> current.merge(host, score, (mine, theirs) -> newer(theirs, mine)));
+        }
+    }
+
+    private static Score newer(Score theirs, Score ours) {
+        return ours.updatedAt() >= theirs.updatedAt() ? ours : theirs;
+    }
+
+    private static boolean reachable(String url) {
+        long start = System.currentTimeMillis();
+        try (HttpTransport.Response response = HttpTransport.head(url, "mirror")) {
+            int code = response.getCode();
+            if (code < HttpURLConnection.HTTP_BAD_REQUEST || code == HttpURLConnection.HTTP_BAD_METHOD) {
+                recordSuccess(url, System.currentTimeMillis() - start);
+                return true;
+            }
+            log.debug("mirror {} answered with response code: {}", url, code);
+        } catch (IOException e) {
+            log.debug("mirror {} is not reachable: {}", url, e.toString());
+        }
+        recordFailure(url);
+        return false;
+    }
+
+    /**
+     * @return true if the url exists, false if the server answered it doesn't, null if the server didn't answer
+     */
+    private static Boolean exists(String url) {
+        long start = System.currentTimeMillis();
+        try (HttpTransport.Response response = HttpTransport.head(url, "mirror")) {
+            int code = response.getCode();
+            if (code < HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                recordSuccess(url, System.currentTimeMillis() - start);
+                return code < HttpURLConnection.HTTP_BAD_REQUEST || code == HttpURLConnection.HTTP_BAD_METHOD;
+            }
+            log.debug("mirror {} answered with response code: {}", url, code);
+        } catch (IOException e) {
+            log.debug("mirror {} is not reachable: {}", url, e.toString());
+        }
+        recordFailure(url);
+        return null;
+    }
+
+    private static boolean recentlyHealthy(String url) {
+        long trust = TimeUnit.SECONDS.toMillis(Config.getInt("mirror.trustSeconds", 60));
+        synchronized (MirrorSelector.class) {
+            Score score = scores().get(host(url));
+            return !Objects.isNull(score) && score.consecutiveFailures == 0 && System.currentTimeMillis() - score.lastSuccess < trust;
+        }
+    }
+
+    private static double cost(Score score, long now) {
+        if (Objects.isNull(score)) {
+            return Config.getInt("mirror.defaultLatencyMillis", 1000);
+        }
+        double cost = score.latency * (1 + Config.getInt("mirror.errorPenalty", 10) * score.errorRate);
+        long cooldown = TimeUnit.SECONDS.toMillis(Config.getInt("mirror.cooldownSeconds", 300));
+        if (score.consecutiveFailures >= Config.getInt("mirror.maxFailures", 3) && now - score.lastFailure < cooldown) {
+            cost += Integer.MAX_VALUE;
+        }
+        return cost;
+    }
+
+    private static void update(String url, long latencyMillis, boolean failed) {
+        String host = host(url);
+        if (Objects.isNull(host)) {
+            return;
+        }
+        synchronized (MirrorSelector.class) {
+            Map<String, Score> current = scores();
+            Score score = current.get(host);
+            long now = System.currentTimeMillis();
+            if (Objects.isNull(score)) {
+                score = new Score();
+                score.latency = failed ? Config.getInt("mirror.defaultLatencyMillis", 1000) : latencyMillis;
+                score.errorRate = failed ? 1 : 0;
+                current.put(host, score);
+            } else {
+                score.errorRate = alpha * (failed ? 1 : 0) + (1 - alpha) * score.errorRate;
+                if (!failed) {
+                    score.latency = alpha * latencyMillis + (1 - alpha) * score.latency;
+                }
+            }
+            if (failed) {
+                score.consecutiveFailures++;
+                score.lastFailure = now;
+            } else {
+                score.consecutiveFailures = 0;
+                score.lastSuccess = now;
+            }
+            dirty = true;
+            if (Objects.isNull(pendingFlush)) {
+                pendingFlush = flusher().schedule(MirrorSelector::flush, Config.getInt("mirror.flushSeconds", 10), TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static ScheduledExecutorService flusher() {
+        if (Objects.isNull(flusher)) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "mirror-scores-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return flusher;
+    }
+
+    private static String host(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private static File getScoresFile() {
+        return new File(Helper.getCacheRoot(), scoresName);
+    }
+
+    private static Map<String, Score> scores() {
+        if (Objects.isNull(scores)) {
+            scores = load();
+        }
+        return scores;
+    }
+
+    private static Map<String, Score> load() {
+        File file = getScoresFile();
+        if (!file.isFile()) {
+            return new HashMap<>();
+        }
+        try {
+            Map<String, Score> loaded = gson.fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8), scoresType);
+            return Objects.isNull(loaded) ? new HashMap<>() : loaded;
+        } catch (IOException | RuntimeException e) {
+            log.warn("ignoring unreadable mirror scores: {}", file);
+            return new HashMap<>();
+        }
+    }
+
+    private static void save(Map<String, Score> current) {
+        File file = getScoresFile();
+        File tmp = new File(file.getPath() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            FileUtils.writeStringToFile(tmp, gson.toJson(current, scoresType), StandardCharsets.UTF_8);
+            Helper.moveAtomically(tmp, file);
+        } catch (IOException e) {
+            log.warn("unable to write mirror scores: {}", e.toString());
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+
+    private static class Score {
+        private double latency;
+        private double errorRate;
+        private int consecutiveFailures;
+        private long lastSuccess;
+        private long lastFailure;
+
+        private long updatedAt() {
+            return Math.max(lastSuccess, lastFailure);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package io.driver.utils;
+
+import io.driver.exception.ExecuteRuntimeCommandErrorException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs short external commands (the configured {@code command.<browser>.<platform>} version queries, the Rosetta
+ * check on a Mac) without ever blocking a configuration: stdout and stderr are drained concurrently so a chatty
+ * child can't fill its pipe, every run has a deadline after which the child is killed, an interrupted caller kills
+ * its child too, and at most {@code process.maxConcurrent} children run at a time. Successful results are cached
+ * by command string for {@code process.cacheSeconds}, concurrent calls with the same command share one child.
+ * Children still alive when the JVM exits are killed.
+ */
+@Slf4j
+public class ProcessExecutor {
+    private static final Semaphore permits = new Semaphore(Math.max(1, Config.getInt("process.maxConcurrent", 4)), true);
+    private static final ConcurrentMap<String, CachedResult> cache = new ConcurrentHashMap<>();
+    private static final Set<Process> running = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ProcessExecutor::cancelAll, "process-reaper"));
+    }
+
+    private ProcessExecutor() {
+
+    }
+
+    @Getter
+    public static class Result {
+        private final String command;
+        private final int exitCode;
+        private final String stdout;
+        private final String stderr;
+        private final boolean timedOut;
+
+        Result(String command, int exitCode, String stdout, String stderr, boolean timedOut) {
+            this.command = command;
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+            this.timedOut = timedOut;
+        }
+
+        public boolean isSuccess() {
+            return !timedOut && exitCode == 0;
+        }
+
+        @Override
+        public String toString() {
+            return command + " -> " + (timedOut ? "timed out" : "exit " + exitCode);
+        }
+    }
+
+    /**
+     * Runs the command, or returns the cached result of a previous successful run.
+     */
+    public static Result execute(String command, long timeoutMillis) {
+        long ttl = TimeUnit.SECONDS.toMillis(Config.getInt("process.cacheSeconds", 300));
+        long now = System.currentTimeMillis();
+        CachedResult cached = cache.compute(command, (k, v) -> v != null && (v.expiresAt > now || !v.future.isDone())
+                ? v : new CachedResult(now + ttl));
+        if (cached.future.isDone() || !cached.claim()) {
+            try {
+                return cached.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return new Result(command, -1, "", "", true);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                        : new ExecuteRuntimeCommandErrorException(e.getCause().toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Result(command, -1, "", "", true);
+            }
+        }
+        try {
+            Result result = run(command, timeoutMillis);
+            cached.future.complete(result);
+            if (!result.isSuccess()) {
+                cache.remove(command, cached);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            cached.future.completeExceptionally(e);
+            cache.remove(command, cached);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the command, bypassing the result cache.
+     */
+    public static Result run(String command, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("no free process slot within {} ms for: {}", timeoutMillis, command);
+                return new Result(command, -1, "", "", true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(command, -1, "", "", true);
+        }
+        Process process = null;
+        try {
+            process = new ProcessBuilder(tokenize(command)).start();
+            running.add(process);
+            process.getOutputStream().close();
+            Future<String> stdout = drain(process.getInputStream());
+            Future<String> stderr = drain(process.getErrorStream());
+            if (!process.waitFor(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                log.warn("command timed out after {} ms: {}", timeoutMillis, command);
+                return new Result(command, -1, "", "", true);
+            }
+            // the pipes close with the child, unless it left a grand child holding them
+            return new Result(command, process.exitValue(), collect(stdout), collect(stderr), false);
+        } catch (IOException e) {
+            log.error(e.toString(), e);
+            throw new ExecuteRuntimeCommandErrorException("unable to execute the command: " + command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(command, -1, "", "", true);
+        } finally {
+            if (process != null) {
+                destroy(process);
+            }
+            permits.release();
+        }
+    }
+
+    /**
+     * Kills every child that is still running.
+     */
+    public static void cancelAll() {
+        running.forEach(ProcessExecutor::destroy);
+    }
+
+    public static void clearCache() {
+        cache.clear();
+    }
+
+    private static void destroy(Process process) {
+        running.remove(process);
+        if (process.isAlive()) {
+            process.destroyForcibly();
+        }
+    }
+
+    private static List<String> tokenize(String command) {
+        // same splitting as Runtime.exec(String), the configured commands rely on it
+        StringTokenizer tokenizer = new StringTokenizer(command);
+        List<String> tokens = new ArrayList<>();
+        while (tokenizer.hasMoreTokens()) {
+            tokens.add(tokenizer.nextToken());
+        }
+        if (tokens.isEmpty()) {
+            throw new ExecuteRuntimeCommandErrorException("empty command");
+        }
+        return tokens;
+    }
+
+    private static Future<String> drain(InputStream in) {
+        int limit = Config.getInt("process.outputLimit", 65536);
+        return AsyncExecutor.io().submit(() -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            try (InputStream stream = in) {
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    out.write(buffer, 0, Math.max(0, Math.min(read, limit - out.size())));
+                }
+            } catch (IOException e) {
+                log.debug("stopped reading process output: {}", e.toString());
+            }
+            return new String(out.toByteArray(), Charset.defaultCharset());
+        });
+    }
+
+    private static String collect(Future<String> output) throws InterruptedException {
+        try {
+            return output.get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            output.cancel(true);
+            return "";
+        }
+    }
+
+    private static class CachedResult {
+        private final long expiresAt;
+        private final CompletableFuture<Result> future = new CompletableFuture<>();
+        private final Thread owner = Thread.currentThread();
+        private volatile boolean claimed;
+
+        private CachedResult(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        private synchronized boolean claim() {
+            if (claimed || owner != Thread.currentThread()) {
+                return false;
+            }
+            claimed = true;
+            return true;
+        }
+    }
+}
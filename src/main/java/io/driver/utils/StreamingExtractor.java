@@ -0,0 +1,153 @@
+package io.driver.utils;
+
+import io.driver.exception.DownloadFailedException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Downloads an archive and decodes it on the fly (zip, or gzip + tar), writing only the entry accepted by the
+ * filter. The archive itself never touches the disk; its digests are computed while it streams by and checked
+ * before the extracted file is published with an atomic move.
+ */
+@Slf4j
+public class StreamingExtractor {
+    private static final int bufferSize = 64 * 1024;
+
+    private StreamingExtractor() {
+
+    }
+
+    public static File downloadAndExtract(String url, File directory, Predicate<String> entryFilter) {
+        return downloadAndExtract(url, directory, entryFilter, null);
+    }
+
+    public static File downloadAndExtract(String url, File directory, Predicate<String> entryFilter, String expectedSha256) {
+        log.info("downloading and extracting: {} to directory: {}", url, directory);
+        if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+            throw new DownloadFailedException("unable to create the directory: " + directory);
+        }
+        Extracted extracted = null;
+        HttpTransport.Response response = null;
+        long start = System.currentTimeMillis();
+        try {
+            MessageDigest archiveSha256 = Integrity.sha256();
+            MessageDigest archiveMd5 = Integrity.md5();
+            long archiveLength;
+            try (Metrics.Timer download = Metrics.start(Metrics.Phase.DOWNLOAD, null, url)) {
+                response = HttpTransport.get(url, "download", Collections.singletonMap("Accept-Encoding", "identity"));
+                int code = response.getCode();
+                if (code != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("unexpected response code: " + code + " for url: " + url);
+                }
+                MirrorSelector.recordSuccess(url, System.currentTimeMillis() - start);
+                CountingInputStream counted = new CountingInputStream(response.getBody());
+                try (InputStream in = new BufferedInputStream(new DigestInputStream(new DigestInputStream(
+                        counted, archiveSha256), archiveMd5), bufferSize)) {
+                    extracted = extract(CloseShieldInputStream.wrap(in), url, directory, entryFilter);
+                    IOUtils.consume(in);
+                }
+                archiveLength = counted.getByteCount();
+                download.bytes(archiveLength);
+                if (response.getContentLength() >= 0 && archiveLength != response.getContentLength()) {
+                    throw new IOException("archive length mismatch for " + url + ", expected: " + response.getContentLength() + ", actual: " + archiveLength);
+                }
+                if (extracted == null) {
+                    throw new IOException("no matching entry in archive: " + url);
+                }
+                download.success();
+            }
+            boolean verified;
+            try (Metrics.Timer verify = Metrics.start(Metrics.Phase.VERIFY, null, url)) {
+                verified = Integrity.verifyArchive(url, response, archiveSha256.digest(), archiveMd5.digest(), expectedSha256);
+                verify.bytes(archiveLength).success();
+            }
+            Helper.moveAtomically(extracted.tmp, extracted.target);
+            if (verified) {
+                Integrity.record(extracted.target, extracted.sha256);
+            } else {
+                Integrity.recordUnverified(extracted.target, extracted.sha256);
+            }
+            return extracted.target;
+        } catch (IOException e) {
+            log.error(e.toString(), e);
+            MirrorSelector.recordFailure(url);
+            throw new DownloadFailedException("failed to download and extract: " + url + ", " + e.getMessage());
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+            if (extracted != null) {
+                FileUtils.deleteQuietly(extracted.tmp);
+            }
+        }
+    }
+
+    private static Extracted extract(InputStream in, String name, File directory, Predicate<String> entryFilter) throws IOException {
+        if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            try (TarArchiveInputStream tar = new TarArchiveInputStream(new GZIPInputStream(in, bufferSize))) {
+                TarArchiveEntry entry;
+                while ((entry = tar.getNextTarEntry()) != null) {
+                    String entryName = FilenameUtils.getName(entry.getName());
+                    if (entry.isFile() && entryFilter.test(entryName)) {
+                        return write(tar, directory, entryName);
+                    }
+                }
+            }
+            return null;
+        }
+        try (ZipInputStream zip = new ZipInputStream(in)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String entryName = FilenameUtils.getName(entry.getName());
+                if (!entry.isDirectory() && entryFilter.test(entryName)) {
+                    return write(zip, directory, entryName);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Extracted write(InputStream in, File directory, String entryName) throws IOException {
+        Extracted extracted = new Extracted();
+        extracted.target = new File(directory, entryName);
+        extracted.tmp = new File(directory, "." + entryName + "." + UUID.randomUUID() + ".tmp");
+        MessageDigest digest = Integrity.sha256();
+        try (OutputStream out = new FileOutputStream(extracted.tmp)) {
+            byte[] buffer = new byte[bufferSize];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(extracted.tmp);
+            throw e;
+        }
+        extracted.tmp.setExecutable(true, false);
+        extracted.sha256 = Integrity.hex(digest.digest());
+        return extracted;
+    }
+
+    private static class Extracted {
+        private File tmp;
+        private File target;
+        private String sha256;
+    }
+}
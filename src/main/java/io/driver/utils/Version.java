@@ -0,0 +1,142 @@
+package io.driver.utils;
+
+import java.util.Arrays;
+
+/**
+ * An immutable dotted version such as {@code 114.0.5735.90}, parsed once into a {@code long[]} of its
+ * components. Ordering is component by component; a version sorts before any longer version it is a prefix of.
+ */
+public final class Version implements Comparable<Version> {
+    private final String text;
+    private final long[] components;
+
+    private Version(String text, long[] components) {
+        this.text = text;
+        this.components = components;
+    }
+
+    public static Version parse(String text) {
+        int length = text.length();
+        if (length == 0) {
+            throw new IllegalArgumentException("empty version");
+        }
+        int count = 1;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '.') {
+                count++;
+            }
+        }
+        long[] components = new long[count];
+        int index = 0;
+        boolean digits = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                components[index] = components[index] * 10 + (c - '0');
+                digits = true;
+            } else if (c == '.' && digits) {
+                index++;
+                digits = false;
+            } else {
+                throw new IllegalArgumentException("not a version: " + text);
+            }
+        }
+        if (!digits) {
+            throw new IllegalArgumentException("not a version: " + text);
+        }
+        return new Version(text, components);
+    }
+
+    /**
+     * Reads the leading components of {@code text} into {@code components} without allocating, padding missing
+     * ones with -1.
+     *
+     * @return false when {@code text} is not a version
+     */
+    static boolean parseInto(String text, long[] components) {
+        Arrays.fill(components, -1);
+        int index = 0;
+        boolean digits = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (index < components.length) {
+                    components[index] = (digits ? components[index] * 10 : 0) + (c - '0');
+                }
+                digits = true;
+            } else if (c == '.' && digits) {
+                index++;
+                digits = false;
+            } else {
+                return false;
+            }
+        }
+        return digits;
+    }
+
+    /**
+     * @return the leading number of {@code text}, ignoring whatever follows it (e.g. {@code 116} of {@code 116.0b8})
+     */
+    public static long parseMajor(String text) {
+        long major = 0;
+        int i = 0;
+        for (; i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++) {
+            major = major * 10 + (text.charAt(i) - '0');
+        }
+        if (i == 0) {
+            throw new IllegalArgumentException("not a version: " + text);
+        }
+        return major;
+    }
+
+    public static boolean isVersion(String text) {
+        try {
+            parse(text);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public int length() {
+        return components.length;
+    }
+
+    /**
+     * @return the component at {@code index}, or -1 when the version is shorter
+     */
+    public long get(int index) {
+        return index < components.length ? components[index] : -1;
+    }
+
+    public long major() {
+        return components[0];
+    }
+
+    @Override
+    public int compareTo(Version other) {
+        int common = Math.min(components.length, other.components.length);
+        for (int i = 0; i < common; i++) {
+            int result = Long.compare(components[i], other.components[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(components.length, other.components.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Version && Arrays.equals(components, ((Version) o).components);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(components);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,155 @@
+package io.driver.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Sorted, immutable index over a listing of driver versions. Candidates sharing the prefix chosen so far form a
+ * contiguous run of the sorted array, so a best-match lookup is one pair of binary searches per component of the
+ * browser version and allocates nothing.
+ */
+public final class VersionCatalog {
+    private final Version[] sorted;
+    private final int[] positions;
+
+    private VersionCatalog(Version[] sorted, int[] positions) {
+        this.sorted = sorted;
+        this.positions = positions;
+    }
+
+    /**
+     * Versions that cannot be parsed are left out; the listing position is kept to break ties the way the
+     * listing ordered them.
+     */
+    public static VersionCatalog of(Collection<String> versions) {
+        List<Listed> parsed = new ArrayList<>(versions.size());
+        int position = 0;
+        for (String version : versions) {
+            if (version != null && Version.isVersion(version)) {
+                parsed.add(new Listed(Version.parse(version), position));
+            }
+            position++;
+        }
+        parsed.sort((a, b) -> {
+            int result = a.version.compareTo(b.version);
+            return result != 0 ? result : Integer.compare(a.position, b.position);
+        });
+        Version[] sorted = new Version[parsed.size()];
+        int[] positions = new int[parsed.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = parsed.get(i).version;
+            positions[i] = parsed.get(i).position;
+        }
+        return new VersionCatalog(sorted, positions);
+    }
+
+    /**
+     * One-off match straight over a listing, same rules as {@link #bestMatch(Version)}: a single pass that
+     * reads each entry into a reused buffer, for callers that would not look up the listing again.
+     */
+    public static String bestMatch(Iterable<String> versions, Version current) {
+        long[] best = new long[current.length()];
+        long[] candidate = new long[current.length()];
+        String match = "";
+        for (String version : versions) {
+            if (version == null || !Version.parseInto(version, candidate) || candidate[0] != current.major()) {
+                continue;
+            }
+            if ("".equals(match) || isBetter(candidate, best, current)) {
+                match = version;
+                System.arraycopy(candidate, 0, best, 0, candidate.length);
+            }
+        }
+        return match;
+    }
+
+    private static boolean isBetter(long[] candidate, long[] best, Version current) {
+        for (int level = 1; level < candidate.length; level++) {
+            long wanted = current.get(level);
+            long a = candidate[level] == wanted ? Long.MAX_VALUE : candidate[level];
+            long b = best[level] == wanted ? Long.MAX_VALUE : best[level];
+            if (a != b) {
+                return a > b;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return sorted.length == 0;
+    }
+
+    public int size() {
+        return sorted.length;
+    }
+
+    public String bestMatch(String current) {
+        return bestMatch(Version.parse(current));
+    }
+
+    /**
+     * The major version must be listed. For every further component the listed one equal to the browser's is
+     * preferred, otherwise the highest listed; remaining ties go to the version listed first.
+     *
+     * @return the matching version, or an empty string when the major version is not listed
+     */
+    public String bestMatch(Version current) {
+        int low = 0;
+        int high = sorted.length;
+        for (int level = 0; level < current.length() && low < high; level++) {
+            long component = current.get(level);
+            int from = lowerBound(low, high, level, component);
+            int to = lowerBound(from, high, level, component + 1);
+            if (from < to) {
+                low = from;
+                high = to;
+            } else if (level == 0) {
+                return "";
+            } else {
+                low = lowerBound(low, high, level, sorted[high - 1].get(level));
+            }
+        }
+        if (low >= high) {
+            return "";
+        }
+        int best = low;
+        for (int i = low + 1; i < high; i++) {
+            if (positions[i] < positions[best]) {
+                best = i;
+            }
+        }
+        return sorted[best].toString();
+    }
+
+    /**
+     * @return the highest listed version of the major version, or an empty string
+     */
+    public String newest(long major) {
+        int from = lowerBound(0, sorted.length, 0, major);
+        int to = lowerBound(from, sorted.length, 0, major + 1);
+        return from < to ? sorted[to - 1].toString() : "";
+    }
+
+    private int lowerBound(int low, int high, int level, long component) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle].get(level) < component) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static class Listed {
+        private final Version version;
+        private final int position;
+
+        private Listed(Version version, int position) {
+            this.version = version;
+            this.position = position;
+        }
+    }
+}
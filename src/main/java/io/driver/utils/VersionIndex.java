@@ -0,0 +1,159 @@
+package io.driver.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-disk cache of a parsed remote listing. A fresh index (younger than {@code index.ttlMinutes})
+ * is returned without touching the network; a stale one is revalidated with
+ * If-None-Match/If-Modified-Since, so an unchanged listing costs a single 304 response.
+ */
+@Slf4j
+public class VersionIndex {
+    private static final Gson gson = new Gson();
+
+    private VersionIndex() {
+
+    }
+
+    public interface Parser<T> {
+        T parse(InputStream in, String url) throws IOException;
+    }
+
+    public static <T> T load(File indexFile, String url, Type type, Parser<T> parser) throws IOException {
+        Entry entry = read(indexFile, url);
+        long ttl = TimeUnit.MINUTES.toMillis(Config.getInt("index.ttlMinutes", 60));
+        if (entry != null && System.currentTimeMillis() - entry.fetchedAt < ttl) {
+            log.debug("using cached version index: {}", indexFile);
+            Metrics.cache(Metrics.Cache.INDEX, true);
+            return gson.fromJson(entry.data, type);
+        }
+        Map<String, String> headers = new HashMap<>();
+        if (entry != null && entry.etag != null) {
+            headers.put("If-None-Match", entry.etag);
+        }
+        if (entry != null && entry.lastModified != null) {
+            headers.put("If-Modified-Since", entry.lastModified);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            // the listing phase ends with the response headers, the body is timed as the parse phase
+            HttpTransport.Response opened;
+            int code;
+            try (Metrics.Timer listing = Metrics.start(Metrics.Phase.LISTING, null, url)) {
+                opened = HttpTransport.get(url, "index", headers);
+                code = opened.getCode();
+                if (code == HttpURLConnection.HTTP_OK || code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    MirrorSelector.recordSuccess(url, System.currentTimeMillis() - start);
+                    listing.success();
+                }
+            }
+            try (HttpTransport.Response response = opened) {
+                if (code == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+                    log.info("version index not modified: {}", url);
+                    Metrics.cache(Metrics.Cache.INDEX, true);
+                    entry.fetchedAt = System.currentTimeMillis();
+                    write(indexFile, entry);
+                    return gson.fromJson(entry.data, type);
+                }
+                if (code != HttpURLConnection.HTTP_OK) {
+                    MirrorSelector.recordFailure(url);
+                    throw new IOException("unexpected response code: " + code + " for url: " + url);
+                }
+                Metrics.cache(Metrics.Cache.INDEX, false);
+                T result;
+                try (Metrics.Timer parse = Metrics.start(Metrics.Phase.PARSE, null, url)) {
+                    result = parser.parse(response.getBody(), url);
+                    parse.success();
+                }
+                if (!isEmpty(result)) {
+                    Entry fresh = new Entry();
+                    fresh.url = url;
+                    fresh.etag = response.getHeader("ETag");
+                    fresh.lastModified = response.getHeader("Last-Modified");
+                    fresh.fetchedAt = System.currentTimeMillis();
+                    fresh.data = gson.toJsonTree(result, type);
+                    write(indexFile, fresh);
+                }
+                return result;
+            }
+        } catch (IOException e) {
+            MirrorSelector.recordFailure(url);
+            if (entry != null) {
+                log.warn("unable to revalidate {}, using stale version index: {}", url, e.toString());
+                return gson.fromJson(entry.data, type);
+            }
+            throw e;
+        }
+    }
+
+    public static void invalidate(File indexFile) {
+        FileUtils.deleteQuietly(indexFile);
+    }
+
+    private static Entry read(File indexFile, String url) {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try {
+            Entry entry = gson.fromJson(FileUtils.readFileToString(indexFile, StandardCharsets.UTF_8), Entry.class);
+            return entry != null && url.equals(entry.url) && entry.data != null ? entry : null;
+        } catch (IOException | RuntimeException e) {
+            log.warn("discarding unreadable version index: {}", indexFile);
+            return null;
+        }
+    }
+
+    private static void write(File indexFile, Entry entry) {
+        File tmp = new File(indexFile.getPath() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            FileUtils.writeStringToFile(tmp, gson.toJson(entry), StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("unable to write version index: {}", e.toString());
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+
+    private static boolean isEmpty(Object result) {
+        if (result == null) {
+            return true;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).isEmpty();
+        }
+        if (result instanceof Map) {
+            return ((Map<?, ?>) result).isEmpty();
+        }
+        return false;
+    }
+
+    private static class Entry {
+        private String url;
+        private String etag;
+        private String lastModified;
+        private long fetchedAt;
+        private JsonElement data;
+    }
+}
@@ -0,0 +1,109 @@
+package io.driver.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compiled form of a driver compatibility table ({@code driver version -> [min browser major, max browser major]},
+ * where {@code Integer.MAX_VALUE} means open ended). The ranges are cut into disjoint intervals at every boundary
+ * and the newest driver covering each interval is resolved up front, so a lookup is one binary search over an
+ * {@code int[]} and allocates nothing.
+ */
+public final class VersionRangeIndex {
+    private static final Type mappingType = new TypeToken<Map<String, List<Integer>>>() {
+    }.getType();
+    private final int[] starts;
+    private final String[] newest;
+    private final int lowest;
+    private final Map<String, List<Integer>> mapping;
+
+    private VersionRangeIndex(int[] starts, String[] newest, int lowest, Map<String, List<Integer>> mapping) {
+        this.starts = starts;
+        this.newest = newest;
+        this.lowest = lowest;
+        this.mapping = mapping;
+    }
+
+    public static VersionRangeIndex read(InputStream json) throws IOException {
+        try (Reader reader = new InputStreamReader(json, StandardCharsets.UTF_8)) {
+            Map<String, List<Integer>> mapping = new Gson().fromJson(reader, mappingType);
+            return of(Objects.isNull(mapping) ? Collections.emptyMap() : mapping);
+        } catch (RuntimeException e) {
+            throw new IOException("unable to read version mapping: " + e.getMessage(), e);
+        }
+    }
+
+    public static VersionRangeIndex of(Map<String, List<Integer>> mapping) {
+        List<Version> versions = new ArrayList<>();
+        List<int[]> ranges = new ArrayList<>();
+        TreeSet<Integer> boundaries = new TreeSet<>();
+        int lowest = Integer.MAX_VALUE;
+        for (Map.Entry<String, List<Integer>> entry : mapping.entrySet()) {
+            List<Integer> range = entry.getValue();
+            if (Objects.isNull(range) || range.size() < 2 || !Version.isVersion(entry.getKey())) {
+                continue;
+            }
+            int min = range.get(0);
+            int max = range.get(1);
+            lowest = Math.min(lowest, min);
+            versions.add(Version.parse(entry.getKey()));
+            ranges.add(new int[]{min, max});
+            boundaries.add(min);
+            if (max != Integer.MAX_VALUE) {
+                boundaries.add(max + 1);
+            }
+        }
+        int[] starts = new int[boundaries.size()];
+        String[] newest = new String[boundaries.size()];
+        int i = 0;
+        for (int start : boundaries) {
+            Version best = null;
+            for (int j = 0; j < versions.size(); j++) {
+                int[] range = ranges.get(j);
+                if (start >= range[0] && start <= range[1] && (best == null || versions.get(j).compareTo(best) > 0)) {
+                    best = versions.get(j);
+                }
+            }
+            starts[i] = start;
+            newest[i++] = best == null ? "" : best.toString();
+        }
+        return new VersionRangeIndex(starts, newest, lowest, Collections.unmodifiableMap(new HashMap<>(mapping)));
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    /**
+     * @return the smallest browser major version any driver supports
+     */
+    public int lowest() {
+        return lowest;
+    }
+
+    /**
+     * @return the newest driver supporting the browser major version, or an empty string
+     */
+    public String newestFor(long major) {
+        if (major < Integer.MIN_VALUE || major > Integer.MAX_VALUE) {
+            return "";
+        }
+        int index = Arrays.binarySearch(starts, (int) major);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index < 0 ? "" : newest[index];
+    }
+
+    public Map<String, List<Integer>> toMap() {
+        return mapping;
+    }
+}
@@ -0,0 +1,232 @@
+import io.driver.exception.NotFoundDriverAddressException;
+import io.driver.fake.FakeDriverServer;
+import io.driver.manage.AutoWebdriver;
+import io.driver.manage.BatchProvisioner;
+import io.driver.manage.DriverRegistry;
+import io.driver.manage.SetDriver;
+import io.driver.manage.browsers.Chrome;
+import io.driver.manage.browsers.Edge;
+import io.driver.manage.browsers.Firefox;
+import io.driver.manage.enums.Arch;
+import io.driver.manage.enums.DriverType;
+import io.driver.manage.enums.Platform;
+import io.driver.utils.Config;
+import io.driver.utils.Metrics;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+
+public class LocalServerDriverTest {
+    private FakeDriverServer server;
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("local-server-test").toFile();
+        server = new FakeDriverServer().driverSize(256 * 1024);
+        server.install(new File(root, "cache"));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        DriverRegistry.invalidateAll();
+        FileUtils.deleteQuietly(root);
+        System.clearProperty(SetDriver.chrome);
+        System.clearProperty(SetDriver.firefox);
+        System.clearProperty(SetDriver.edge);
+    }
+
+    @Test
+    public void testColdAndWarmChrome() {
+        new Chrome().configure();
+        assertDriver(SetDriver.chrome, "114.0.5735.90");
+        server.resetRequests();
+        new Chrome().configure();
+        Assert.assertEquals(0, server.getRequests());
+    }
+
+    @Test
+    public void testColdAndWarmFirefox() {
+        new Firefox().configure();
+        assertDriver(SetDriver.firefox, "0.33.0");
+        server.resetRequests();
+        new Firefox().configure();
+        Assert.assertEquals(0, server.getRequests());
+    }
+
+    @Test
+    public void testCachedDriverOfOtherArchIsNotReused() {
+        Config.override("platform.arch", "64");
+        new Firefox().configure();
+        server.resetRequests();
+        Config.override("platform.arch", "arm64");
+        new Firefox().configure();
+        assertDriver(SetDriver.firefox, "0.33.0");
+        Assert.assertTrue(server.getRequests() > 0);
+        server.resetRequests();
+        new Firefox().configure();
+        Assert.assertEquals(0, server.getRequests());
+    }
+
+    @Test
+    public void testColdAndWarmEdge() {
+        new Edge().configure();
+        assertDriver(SetDriver.edge, "114.0.1823.51");
+        server.resetRequests();
+        new Edge().configure();
+        Assert.assertEquals(0, server.getRequests());
+    }
+
+    @Test
+    public void testChromeListingFailureFallsBackToMirror() {
+        server.failNext(1, 503);
+        new Chrome().configure();
+        assertDriver(SetDriver.chrome, "114.0.5735.90");
+    }
+
+    @Test
+    public void testConfiguredMirrors() {
+        Config.override("chrome.listings", "npm|" + server.getBaseUrl() + "/npmmirror/chromedriver/");
+        Config.override("chrome.downloadUrlPatterns", server.getBaseUrl() + "/npmmirror/chromedriver/%s/chromedriver_%s%s.zip");
+        new Chrome().configure();
+        assertDriver(SetDriver.chrome, "114.0.5735.90");
+        Assert.assertTrue(server.getRequestLog().stream().noneMatch(i -> i.contains(" /chromedriver/")));
+    }
+
+    @Test
+    public void testMetrics() {
+        Metrics.reset();
+        new Edge().configure();
+        Assert.assertEquals(1, Metrics.snapshot().get(Metrics.Phase.DOWNLOAD).getCount());
+        Assert.assertTrue(Metrics.snapshot().get(Metrics.Phase.DOWNLOAD).getBytes() > 256 * 1024);
+        Assert.assertEquals(1, Metrics.cacheSnapshot().get(Metrics.Cache.LOCAL).getMisses());
+        new Edge().configure();
+        Assert.assertEquals(1, Metrics.cacheSnapshot().get(Metrics.Cache.FINGERPRINT).getHits());
+        Assert.assertEquals(2, Metrics.snapshot().get(Metrics.Phase.CONFIGURE).getCount());
+        Assert.assertEquals(0, Metrics.snapshot().get(Metrics.Phase.CONFIGURE).getFailures());
+    }
+
+    @Test
+    public void testFingerprintFollowsBrowserExecutable() throws IOException {
+        Metrics.reset();
+        new Chrome().configure();
+        new Chrome().configure();
+        Assert.assertEquals(1, Metrics.cacheSnapshot().get(Metrics.Cache.FINGERPRINT).getHits());
+        File executable = new File(root, "cache-browsers" + File.separator + "chrome");
+        FileUtils.writeStringToFile(executable, "chrome updated", StandardCharsets.UTF_8);
+        new Chrome().configure();
+        Assert.assertEquals(1, Metrics.cacheSnapshot().get(Metrics.Cache.FINGERPRINT).getHits());
+        new Chrome().configure();
+        Assert.assertEquals(2, Metrics.cacheSnapshot().get(Metrics.Cache.FINGERPRINT).getHits());
+        Config.override("platform.arch", "arm64");
+        try {
+            new Chrome().configure();
+        } catch (NotFoundDriverAddressException e) {
+            // no chromedriver is built for linux-arm64, the cached x64 one is not re-used either
+        }
+        Assert.assertEquals(2, Metrics.cacheSnapshot().get(Metrics.Cache.FINGERPRINT).getHits());
+    }
+
+    @Test
+    public void testFingerprintChecksDriverModification() {
+        Metrics.reset();
+        new Chrome().configure();
+        new Chrome().configure();
+        Assert.assertEquals(1, Metrics.cacheSnapshot().get(Metrics.Cache.FINGERPRINT).getHits());
+        File driver = new File(System.getProperty(SetDriver.chrome));
+        Assert.assertTrue(driver.setLastModified(driver.lastModified() - 60000));
+        new Chrome().configure();
+        Assert.assertEquals(1, Metrics.cacheSnapshot().get(Metrics.Cache.FINGERPRINT).getHits());
+        assertDriver(SetDriver.chrome, "114.0.5735.90");
+        new Chrome().configure();
+        Assert.assertEquals(2, Metrics.cacheSnapshot().get(Metrics.Cache.FINGERPRINT).getHits());
+    }
+
+    @Test
+    public void testFingerprintOfCommandProbe() {
+        for (Platform platform : Platform.values()) {
+            Config.override("probe.chrome." + platform.name().toLowerCase() + ".01", "dir|" + new File(root, "missing").getAbsolutePath());
+        }
+        Config.override("command.chrome.linux", "echo Google Chrome 114.0.5735.90");
+        Config.override("command.chrome.mac", "echo Google Chrome 114.0.5735.90");
+        Config.override("command.chrome.windows.01", "cmd /c echo 114.0.5735.90");
+        Metrics.reset();
+        new Chrome().configure();
+        assertDriver(SetDriver.chrome, "114.0.5735.90");
+        new Chrome().configure();
+        Assert.assertEquals(1, Metrics.cacheSnapshot().get(Metrics.Cache.FINGERPRINT).getHits());
+    }
+
+    @Test
+    public void testSharedManager() {
+        AutoWebdriver chrome = AutoWebdriver.of(DriverType.Chrome);
+        Assert.assertSame(chrome, AutoWebdriver.of(DriverType.Chrome));
+        chrome.configure();
+        assertDriver(SetDriver.chrome, "114.0.5735.90");
+        Config.override("cache.maxEntries", "5");
+        Assert.assertNotSame(chrome, AutoWebdriver.of(DriverType.Chrome));
+    }
+
+    @Test
+    public void testBatchProvisioner() {
+        File output = new File(root, "batch");
+        List<BatchProvisioner.Result> results = new BatchProvisioner(output, 4)
+                .add(DriverType.Chrome, Platform.Linux, Arch.X64, "113-115")
+                .add(DriverType.Chrome, Platform.Mac, Arch.Arm64, "114")
+                .add("firefox:windows-64:0.32.2")
+                .run();
+        Assert.assertEquals(5, results.size());
+        for (BatchProvisioner.Result result : results) {
+            Assert.assertNull(result.getError());
+            Assert.assertTrue(result.getDriver().isFile());
+            Assert.assertEquals(result.getVersion(), result.getDriver().getParentFile().getName());
+        }
+        Assert.assertTrue(new File(output, "linux-64/chrome/115.0.5790.102").isDirectory());
+        Assert.assertTrue(new File(output, "mac-arm64/chrome/114.0.5735.90").isDirectory());
+    }
+
+    @Test
+    public void testArtifactFallback() {
+        List<BatchProvisioner.Result> results = new BatchProvisioner(new File(root, "batch"), 2)
+                .add(DriverType.Edge, Platform.Mac, Arch.Arm64, "114")
+                .add(DriverType.Chrome, Platform.Linux, Arch.Arm64, "114")
+                .run();
+        for (BatchProvisioner.Result result : results) {
+            if (result.getType() == DriverType.Edge) {
+                Assert.assertTrue(result.getDriver().isFile());
+            } else {
+                Assert.assertTrue(result.getError() instanceof NotFoundDriverAddressException);
+            }
+        }
+        Assert.assertTrue(server.getRequestLog().contains("GET /edge/114.0.1823.51/edgedriver_mac64.zip"));
+    }
+
+    @Test
+    public void testConfigDriversAsync() {
+        Map<DriverType, String> drivers = AutoWebdriver.configDrivers(DriverType.Chrome, DriverType.Firefox, DriverType.Edge);
+        Assert.assertEquals(drivers.get(DriverType.Chrome), System.getProperty(SetDriver.chrome));
+        Assert.assertEquals(drivers.get(DriverType.Firefox), System.getProperty(SetDriver.firefox));
+        Assert.assertEquals(drivers.get(DriverType.Edge), System.getProperty(SetDriver.edge));
+        assertDriver(SetDriver.chrome, "114.0.5735.90");
+        assertDriver(SetDriver.firefox, "0.33.0");
+        assertDriver(SetDriver.edge, "114.0.1823.51");
+    }
+
+    private void assertDriver(String property, String version) {
+        File driver = new File(System.getProperty(property));
+        Assert.assertTrue(driver.isFile());
+        Assert.assertEquals(version, driver.getParentFile().getName());
+        Assert.assertTrue(driver.getAbsolutePath().startsWith(root.getAbsolutePath()));
+    }
+}
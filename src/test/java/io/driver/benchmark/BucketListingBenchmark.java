@@ -0,0 +1,79 @@
+package io.driver.benchmark;
+
+import io.driver.utils.BucketListingParser;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the Jsoup DOM + XPath listing parse with the streaming {@link BucketListingParser}.
+ * Run with {@code -prof gc} to see the allocation difference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BucketListingBenchmark {
+    private static final String[] platforms = {"linux64", "mac64", "mac_arm64", "win32"};
+
+    @Param({"5000", "30000"})
+    public int keys;
+
+    private byte[] listing;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>")
+                .append("<ListBucketResult xmlns='http://doc.s3.amazonaws.com/2006-03-01'><Name>chromedriver</Name>");
+        for (int i = 0; i < keys; i++) {
+            String version = (70 + i % 45) + ".0." + (3000 + i / 4) + "." + (i % 200);
+            String name = i % 5 == 0 ? "notes.txt" : "chromedriver_" + platforms[i % platforms.length] + ".zip";
+            builder.append("<Contents><Key>").append(version).append('/').append(name).append("</Key>")
+                    .append("<Generation>1536851").append(i).append("</Generation><MetaGeneration>1</MetaGeneration>")
+                    .append("<LastModified>2018-09-13T15:14:30.000Z</LastModified><ETag>\"").append(i).append("\"</ETag>")
+                    .append("<Size>").append(3000000 + i).append("</Size></Contents>");
+        }
+        listing = builder.append("</ListBucketResult>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<String> jsoupDom() throws IOException {
+        Document document = Jsoup.parse(new ByteArrayInputStream(listing), null, "http://localhost/", Parser.xmlParser());
+        return document.selectXpath("//Key").stream().map(Element::text)
+                .filter(i -> i.endsWith(".zip"))
+                .filter(j -> j.contains("linux"))
+                .map(k -> k.split("/")[0])
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> streaming() throws IOException {
+        return BucketListingParser.list(new ByteArrayInputStream(listing), "http://localhost/", "Key",
+                        i -> i.endsWith(".zip") && i.contains("linux"))
+                .stream()
+                .map(k -> k.substring(0, k.indexOf('/')))
+                .collect(Collectors.toList());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BucketListingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
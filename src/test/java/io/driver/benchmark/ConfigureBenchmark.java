@@ -0,0 +1,120 @@
+package io.driver.benchmark;
+
+import io.driver.fake.FakeDriverServer;
+import io.driver.manage.AutoWebdriver;
+import io.driver.manage.SetDriver;
+import io.driver.manage.browsers.Chrome;
+import io.driver.manage.browsers.Edge;
+import io.driver.manage.browsers.Firefox;
+import io.driver.manage.enums.DriverType;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@code configure()} of each browser against a {@link FakeDriverServer}. {@code cold} starts from an
+ * empty cache every invocation (version listing, download, extraction, verification), {@code warm} re-runs on a
+ * populated cache and should not send a single request. {@code latencyMillis} is added to every response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigureBenchmark {
+
+    @Param({"Chrome", "Firefox", "Edge"})
+    public DriverType type;
+
+    @Param({"0", "50"})
+    public long latencyMillis;
+
+    @Param({"4194304"})
+    public int driverSize;
+
+    private FakeDriverServer server;
+    private File root;
+    private File warmCache;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("configure-benchmark").toFile();
+        warmCache = new File(root, "warm");
+        server = new FakeDriverServer().latency(latencyMillis).driverSize(driverSize);
+        server.install(warmCache);
+        configure(type);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @State(Scope.Thread)
+    public static class ColdCache {
+        private int runs;
+        private File cache;
+
+        @Setup(Level.Invocation)
+        public void setUp(ConfigureBenchmark benchmark) {
+            cache = new File(benchmark.root, "cold-" + runs++);
+            benchmark.server.cache(cache);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown(ConfigureBenchmark benchmark) {
+            benchmark.server.cache(benchmark.warmCache);
+            FileUtils.deleteQuietly(cache);
+        }
+    }
+
+    @Benchmark
+    public String cold(ColdCache cold) {
+        return configure(type);
+    }
+
+    @Benchmark
+    public String warm() {
+        return configure(type);
+    }
+
+    static String configure(DriverType type) {
+        AutoWebdriver browser;
+        String property;
+        switch (type) {
+            case Chrome:
+                browser = new Chrome();
+                property = SetDriver.chrome;
+                break;
+            case Firefox:
+                browser = new Firefox();
+                property = SetDriver.firefox;
+                break;
+            case Edge:
+                browser = new Edge();
+                property = SetDriver.edge;
+                break;
+            default:
+                throw new IllegalArgumentException("no such type: " + type);
+        }
+        browser.configure();
+        return System.getProperty(property);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ConfigureBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
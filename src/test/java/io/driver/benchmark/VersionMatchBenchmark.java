@@ -0,0 +1,118 @@
+package io.driver.benchmark;
+
+import io.driver.utils.Helper;
+import io.driver.utils.Version;
+import io.driver.utils.VersionCatalog;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Best-match lookup over large synthetic listings: the previous split/stream implementation, the
+ * single pass {@link Helper} entry point, building a {@link VersionCatalog} and a binary search lookup
+ * against a prebuilt one. The runner enables the GC profiler; {@code helper} and {@code catalogLookup}
+ * should report a {@code gc.alloc.rate.norm} that does not grow with the listing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionMatchBenchmark {
+
+    @Param({"5000", "50000"})
+    public int versions;
+
+    private List<String> listing;
+    private VersionCatalog catalog;
+    private String browserVersion;
+    private Version parsedBrowserVersion;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        listing = new ArrayList<>(versions);
+        for (int i = 0; i < versions; i++) {
+            listing.add((60 + random.nextInt(60)) + ".0." + (3000 + random.nextInt(3000)) + "." + random.nextInt(300));
+        }
+        catalog = VersionCatalog.of(listing);
+        browserVersion = "114.0.5735.199";
+        parsedBrowserVersion = Version.parse(browserVersion);
+    }
+
+    @Benchmark
+    public String legacy() {
+        return legacyFindBestMatchVersion(browserVersion, listing);
+    }
+
+    @Benchmark
+    public String helper() {
+        return Helper.findBestMatchVersion(browserVersion, listing);
+    }
+
+    @Benchmark
+    public VersionCatalog catalogBuild() {
+        return VersionCatalog.of(listing);
+    }
+
+    @Benchmark
+    public String catalogLookup() {
+        return catalog.bestMatch(parsedBrowserVersion);
+    }
+
+    private static String legacyFindBestMatchVersion(String currentVersion, List<String> versionList) {
+        if ("".equals(currentVersion)) {
+            throw new IllegalArgumentException("current version is empty");
+        }
+        if (versionList.isEmpty()) {
+            throw new IllegalArgumentException("version list is empty");
+        }
+        List<String> mainVersions = versionList.stream().filter(i -> i.split("\\.")[0].equals(currentVersion.split("\\.")[0])).collect(Collectors.toList());
+        if (mainVersions.isEmpty()) {
+            return "";
+        }
+        List<Long> subList = Arrays.stream(currentVersion.split("\\.")).map(Long::parseLong).collect(Collectors.toList());
+        for (int i = 0; i < subList.size(); i++) {
+            long mainIndex = subList.get(i);
+            List<String> equals = new ArrayList<>();
+            List<String> others = new ArrayList<>();
+            for (String s : versionList) {
+                long versionIndex = Long.parseLong(s.split("\\.")[i]);
+                if (versionIndex == mainIndex) {
+                    equals.add(s);
+                } else {
+                    others.add(s);
+                }
+            }
+
+            if (!equals.isEmpty()) {
+                versionList = equals;
+            } else {
+                int va = i;
+                Long max = others.stream().map(m -> Long.parseLong(m.split("\\.")[va])).max(Comparator.naturalOrder()).orElseThrow(() -> new NoSuchElementException("No value present"));
+                versionList = others.stream().filter(b -> {
+                    Long factor = Long.parseLong(b.split("\\.")[va]);
+                    return factor.equals(max);
+                }).collect(Collectors.toList());
+            }
+
+        }
+        return versionList.isEmpty() ? "" : versionList.get(0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(VersionMatchBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
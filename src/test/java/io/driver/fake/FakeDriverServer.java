@@ -0,0 +1,415 @@
+package io.driver.fake;
+
+import com.google.common.io.BaseEncoding;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.driver.manage.enums.Platform;
+import io.driver.utils.Config;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Local stand-in for the driver hosts: serves the chromedriver bucket listing (XML), the npmmirror listing (JSON),
+ * the geckodriver support page (HTML), the Edge blob listing (XML) and generated driver archives, with injectable
+ * latency, bandwidth limit and failures. {@link #install(File)} points the configuration and the browser version
+ * probes at it, so a whole {@code configure()} runs without leaving the machine.
+ */
+public class FakeDriverServer implements AutoCloseable {
+    private static final Pattern archivePath = Pattern.compile("/(chromedriver|npmmirror/chromedriver|edge)/([0-9.]+)/([^/]+)\\.zip"
+            + "|/(geckodriver|npmmirror/geckodriver)/v([0-9.]+)/geckodriver-v[0-9.]+-([^/]+)");
+    private static final String[] chromeArtifacts = {"linux64", "mac64", "mac_arm64", "win32"};
+    private static final String[] edgeArtifacts = {"linux64", "mac64", "arm64", "win32", "win64"};
+    private static final List<String> geckoArtifacts = Arrays.asList("win32.zip", "win64.zip", "linux32.tar.gz", "linux64.tar.gz",
+            "linux-aarch64.tar.gz", "macos.tar.gz", "macos-aarch64.tar.gz");
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "fake-driver-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, String> browserVersions = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> driverVersions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, byte[]> archives = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> requestLog = new CopyOnWriteArrayList<>();
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> replacements = new ConcurrentHashMap<>();
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile int driverSize = 8 * 1024 * 1024;
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond;
+    private volatile double failureRate;
+    private volatile int failureStatus = 503;
+
+    public FakeDriverServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        browser("chrome", "114.0.5735.198", "113.0.5672.63", "114.0.5735.90", "115.0.5790.102");
+        browser("edge", "114.0.1823.82", "113.0.1774.57", "114.0.1823.51", "115.0.1901.183");
+        browser("firefox", "115.0.2", "0.31.0", "0.32.2", "0.33.0");
+    }
+
+    /**
+     * Sets the installed browser version and the driver versions listed for it.
+     */
+    public FakeDriverServer browser(String browser, String browserVersion, String... drivers) {
+        browserVersions.put(browser, browserVersion);
+        driverVersions.put(browser, Arrays.asList(drivers));
+        return this;
+    }
+
+    public FakeDriverServer driverSize(int bytes) {
+        driverSize = bytes;
+        archives.clear();
+        return this;
+    }
+
+    public FakeDriverServer latency(long millis) {
+        latencyMillis = millis;
+        return this;
+    }
+
+    public FakeDriverServer bandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Fails the given fraction of requests with {@code status}.
+     */
+    public FakeDriverServer failures(double rate, int status) {
+        failureRate = rate;
+        failureStatus = status;
+        return this;
+    }
+
+    /**
+     * Fails the next {@code count} requests with {@code status}.
+     */
+    public FakeDriverServer failNext(int count, int status) {
+        failures.set(count);
+        failureStatus = status;
+        return this;
+    }
+
+    /**
+     * Serves {@code content} at {@code path} (which may include a query) with an ETag, honouring Range, If-Range and If-None-Match.
+     */
+    public FakeDriverServer file(String path, byte[] content) {
+        files.put(path, content);
+        return this;
+    }
+
+    /**
+     * Replaces the file at {@code path} right after its next HEAD was answered, as if it was republished between
+     * the probe and the download.
+     */
+    public FakeDriverServer replaceAfterHead(String path, byte[] content) {
+        replacements.put(path, content);
+        return this;
+    }
+
+    /**
+     * @return the Range headers received, in arrival order
+     */
+    public List<String> getRanges() {
+        return new ArrayList<>(ranges);
+    }
+
+    public int getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the request paths in arrival order
+     */
+    public List<String> getRequestLog() {
+        return new ArrayList<>(requestLog);
+    }
+
+    public void resetRequests() {
+        requests.set(0);
+        requestLog.clear();
+        ranges.clear();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Points every driver host and the browser version probes at this server, with {@code cacheDir} as the
+     * driver cache and the shared store disabled. The fake browser executables sit next to the version files.
+     */
+    public void install(File cacheDir) throws IOException {
+        String base = getBaseUrl();
+        Config.override("chrome.google", base + "/chromedriver/");
+        Config.override("chrome.googleDownloadUrlPattern", base + "/chromedriver/%s/chromedriver_%s%s.zip");
+        Config.override("chrome.mirror", base + "/npmmirror/chromedriver/");
+        Config.override("chrome.mirrorDownloadUrlPattern", base + "/npmmirror/chromedriver/%s/chromedriver_%s%s.zip");
+        Config.override("fireox.version.mappinginfo", base + "/geckodriver/Support.html");
+        Config.override("firefox.downloadUrlPattern", base + "/geckodriver/v%s/geckodriver-v%s-%s");
+        Config.override("firefox.mirrorDownloadUrlPattern", base + "/npmmirror/geckodriver/v%s/geckodriver-v%s-%s");
+        Config.override("edge.edgeDriverUrl", base + "/edge/");
+        Config.override("edge.edgeDownloadUrlPattern", base + "/edge/%s/edgedriver_%s%s.zip");
+        Config.override("store.enabled", "false");
+        cache(cacheDir);
+        File versions = new File(cacheDir.getParentFile(), cacheDir.getName() + "-browsers");
+        for (Map.Entry<String, String> browser : browserVersions.entrySet()) {
+            File file = new File(versions, browser.getKey() + ".version");
+            FileUtils.writeStringToFile(file, browser.getValue(), StandardCharsets.UTF_8);
+            File executable = new File(versions, browser.getKey());
+            FileUtils.writeStringToFile(executable, browser.getKey(), StandardCharsets.UTF_8);
+            for (Platform platform : Platform.values()) {
+                Config.override(String.format("probe.%s.%s.01", browser.getKey(), platform.name().toLowerCase()),
+                        "file|" + file.getAbsolutePath() + "|([0-9.]+)");
+                Config.override(String.format("browser.%s.%s.01", browser.getKey(), platform.name().toLowerCase()),
+                        executable.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Switches the driver cache, e.g. to an empty directory for a cold run.
+     */
+    public void cache(File cacheDir) {
+        Config.override("cache.dir", cacheDir.getAbsolutePath());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        Config.clearOverrides();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        requestLog.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+        try {
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            if (failures.getAndUpdate(i -> Math.max(0, i - 1)) > 0
+                    || failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                send(exchange, failureStatus, "text/plain", new byte[0]);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            switch (path) {
+                case "/chromedriver/":
+                    send(exchange, 200, "application/xml", bucketListing("chrome", "chromedriver", "Key", "chromedriver_%s.zip", chromeArtifacts));
+                    return;
+                case "/npmmirror/chromedriver/":
+                    send(exchange, 200, "application/json", mirrorListing());
+                    return;
+                case "/edge/":
+                    send(exchange, 200, "application/xml", bucketListing("edge", "edgedriver", "Name", "edgedriver_%s.zip", edgeArtifacts));
+                    return;
+                case "/geckodriver/Support.html":
+                    send(exchange, 200, "text/html", supportPage());
+                    return;
+                default:
+                    String query = exchange.getRequestURI().getRawQuery();
+                    byte[] file = files.get(query == null ? path : path + "?" + query);
+                    if (file != null) {
+                        sendFile(exchange, query == null ? path : path + "?" + query, file);
+                        return;
+                    }
+                    byte[] archive = archive(path);
+                    if (archive == null) {
+                        send(exchange, 404, "text/plain", new byte[0]);
+                    } else {
+                        exchange.getResponseHeaders().set("Content-MD5", BaseEncoding.base64().encode(digest("MD5", archive)));
+                        send(exchange, 200, "application/octet-stream", archive);
+                    }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] bucketListing(String browser, String bucket, String element, String pattern, String... platforms) {
+        StringBuilder builder = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?><ListBucketResult><Name>")
+                .append(bucket).append("</Name>");
+        for (String version : driverVersions.get(browser)) {
+            for (String platform : platforms) {
+                builder.append("<Contents><").append(element).append('>').append(version).append('/').append(String.format(pattern, platform))
+                        .append("</").append(element).append("><Size>").append(driverSize).append("</Size></Contents>");
+            }
+            builder.append("<Contents><").append(element).append('>').append(version).append("/notes.txt</").append(element).append("></Contents>");
+        }
+        return builder.append("</ListBucketResult>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] mirrorListing() {
+        StringBuilder builder = new StringBuilder("[");
+        for (String version : driverVersions.get("chrome")) {
+            builder.append(builder.length() > 1 ? "," : "").append("{\"id\":\"").append(version).append("\",\"category\":\"chromedriver\",\"name\":\"")
+                    .append(version).append("/\",\"date\":\"2023-06-01T00:00:00Z\",\"type\":\"dir\"}");
+        }
+        return builder.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] supportPage() {
+        StringBuilder builder = new StringBuilder("<html><body><table><tr><th>geckodriver</th><th>Selenium</th><th>Firefox min</th><th>Firefox max</th></tr>");
+        int min = 100;
+        for (String version : driverVersions.get("firefox")) {
+            builder.append("<tr><td>").append(version).append("</td><td>≥ 3.11 (3.14 Python)</td><td>").append(min).append(" ESR</td><td>n/a</td></tr>");
+            min += 6;
+        }
+        return builder.append("</table></body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean published(String browser, String spec) {
+        if ("firefox".equals(browser)) {
+            return geckoArtifacts.contains(spec);
+        }
+        String[] artifacts = "chrome".equals(browser) ? chromeArtifacts : edgeArtifacts;
+        return Arrays.asList(artifacts).contains(spec.substring(spec.indexOf('_') + 1));
+    }
+
+    private byte[] archive(String path) throws IOException {
+        Matcher matcher = archivePath.matcher(path);
+        if (!matcher.matches()) {
+            return null;
+        }
+        boolean gecko = matcher.group(4) != null;
+        String browser = gecko ? "firefox" : matcher.group(1).contains("chrome") ? "chrome" : "edge";
+        String version = gecko ? matcher.group(5) : matcher.group(2);
+        String spec = gecko ? matcher.group(6) : matcher.group(3);
+        if (!driverVersions.get(browser).contains(version) || !published(browser, spec)) {
+            return null;
+        }
+        byte[] cached = archives.get(path);
+        if (cached != null) {
+            return cached;
+        }
+        String name = gecko ? "geckodriver" : "chrome".equals(browser) ? "chromedriver" : "msedgedriver";
+        if (spec.contains("win")) {
+            name += ".exe";
+        }
+        byte[] driver = new byte[driverSize];
+        new Random(path.hashCode()).nextBytes(driver);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(driverSize + 1024);
+        if (spec.endsWith(".tar.gz")) {
+            try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(bytes))) {
+                TarArchiveEntry entry = new TarArchiveEntry(name);
+                entry.setSize(driver.length);
+                entry.setMode(0755);
+                tar.putArchiveEntry(entry);
+                tar.write(driver);
+                tar.closeArchiveEntry();
+            }
+        } else {
+            try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+                zip.putNextEntry(new ZipEntry("LICENSE.txt"));
+                zip.write("license".getBytes(StandardCharsets.UTF_8));
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(driver);
+                zip.closeEntry();
+            }
+        }
+        archives.putIfAbsent(path, bytes.toByteArray());
+        return archives.get(path);
+    }
+
+    private void sendFile(HttpExchange exchange, String path, byte[] file) throws IOException, InterruptedException {
+        String etag = "\"" + BaseEncoding.base16().lowerCase().encode(digest("MD5", file)) + "\"";
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null) {
+            ranges.add(range);
+        }
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        send(exchange, 200, "application/octet-stream", file, ifRange == null || ifRange.equals(etag));
+        byte[] replacement = "HEAD".equals(exchange.getRequestMethod()) ? replacements.remove(path) : null;
+        if (replacement != null) {
+            files.put(path, replacement);
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException, InterruptedException {
+        send(exchange, status, contentType, body, true);
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, byte[] body, boolean ranged) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        int offset = 0;
+        int length = body.length;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (status == 200 && ranged && range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring(6).split("-", 2);
+            offset = Integer.parseInt(bounds[0]);
+            int end = bounds.length > 1 && !bounds[1].isEmpty() ? Math.min(Integer.parseInt(bounds[1]), body.length - 1) : body.length - 1;
+            length = end - offset + 1;
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + offset + "-" + end + "/" + body.length);
+        }
+        if (head) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        if (length == 0) {
+            return;
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            int chunk = 64 * 1024;
+            for (int written = 0; written < length; written += chunk) {
+                int size = Math.min(chunk, length - written);
+                out.write(body, offset + written, size);
+                if (bytesPerSecond > 0) {
+                    TimeUnit.MICROSECONDS.sleep(size * 1_000_000L / bytesPerSecond);
+                }
+            }
+        }
+    }
+
+    private static byte[] digest(String algorithm, byte[] data) {
+        try {
+            return MessageDigest.getInstance(algorithm).digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
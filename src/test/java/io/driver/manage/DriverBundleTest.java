@@ -0,0 +1,176 @@
+package io.driver.manage;
+
+import io.driver.exception.IntegrityCheckFailedException;
+import io.driver.manage.enums.Arch;
+import io.driver.manage.enums.DriverType;
+import io.driver.manage.enums.Platform;
+import io.driver.utils.Integrity;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class DriverBundleTest {
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("driver-bundle-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (boolean deflate : new boolean[]{false, true}) {
+            File file = new File(root, "drivers-" + deflate + ".awdb");
+            new DriverBundle.Writer(deflate)
+                    .add(DriverType.Chrome, Platform.Linux, Arch.X64, "115.0.5790.102", driver("chromedriver", "chrome-115"))
+                    .add(DriverType.Chrome, Platform.Linux, Arch.X64, "114.0.5735.90", driver("chromedriver", "chrome-114"))
+                    .add(DriverType.Firefox, Platform.Windows, Arch.X64, "0.33.0", driver("geckodriver.exe", "gecko-33"))
+                    .write(file);
+            DriverBundle bundle = DriverBundle.open(file);
+            try {
+                Assert.assertEquals(3, bundle.size());
+                Assert.assertEquals(Arrays.asList("114.0.5735.90", "115.0.5790.102"), bundle.versions(DriverType.Chrome, Platform.Linux, Arch.X64));
+                Assert.assertEquals(Collections.singletonList("0.33.0"), bundle.versions(DriverType.Firefox, Platform.Windows, Arch.X64));
+
+                DriverBundle.Entry entry = bundle.find(DriverType.Chrome, Platform.Linux, Arch.X64, "114.0.5735.90");
+                Assert.assertEquals(deflate, entry.isDeflated());
+                File extracted = bundle.extract(entry, new File(root, "out-" + deflate));
+                Assert.assertEquals("chromedriver", extracted.getName());
+                Assert.assertEquals("chrome-114", FileUtils.readFileToString(extracted, StandardCharsets.UTF_8));
+                Assert.assertTrue(Integrity.isTrusted(extracted));
+            } finally {
+                bundle.close();
+            }
+        }
+    }
+
+    @Test
+    public void testLookupMisses() throws IOException {
+        File file = new File(root, "drivers.awdb");
+        new DriverBundle.Writer(false)
+                .add(DriverType.Chrome, Platform.Linux, Arch.X64, "114.0.5735.90", driver("chromedriver", "chrome-114"))
+                .write(file);
+        DriverBundle bundle = DriverBundle.open(file);
+        try {
+            Assert.assertNull(bundle.find(DriverType.Chrome, Platform.Linux, Arch.X64, "115.0.5790.102"));
+            Assert.assertNull(bundle.find(DriverType.Chrome, Platform.Linux, Arch.Arm64, "114.0.5735.90"));
+            Assert.assertNull(bundle.find(DriverType.Chrome, Platform.Mac, Arch.X64, "114.0.5735.90"));
+            Assert.assertTrue(bundle.versions(DriverType.Edge, Platform.Linux, Arch.X64).isEmpty());
+        } finally {
+            bundle.close();
+        }
+    }
+
+    @Test
+    public void testLaterAddReplacesSameVersion() throws IOException {
+        File file = new File(root, "drivers.awdb");
+        DriverBundle.Writer writer = new DriverBundle.Writer(false)
+                .add(DriverType.Edge, Platform.Mac, Arch.Arm64, "114.0.1823.51", driver("msedgedriver", "old"))
+                .add(DriverType.Edge, Platform.Mac, Arch.Arm64, "114.0.1823.51", driver("msedgedriver", "new"));
+        Assert.assertEquals(1, writer.size());
+        writer.write(file);
+        DriverBundle bundle = DriverBundle.open(file);
+        try {
+            File extracted = bundle.extract(bundle.find(DriverType.Edge, Platform.Mac, Arch.Arm64, "114.0.1823.51"), new File(root, "out"));
+            Assert.assertEquals("new", FileUtils.readFileToString(extracted, StandardCharsets.UTF_8));
+        } finally {
+            bundle.close();
+        }
+    }
+
+    @Test
+    public void testDamagedDriverIsRejected() throws IOException {
+        File file = new File(root, "drivers.awdb");
+        new DriverBundle.Writer(false)
+                .add(DriverType.Chrome, Platform.Linux, Arch.X64, "114.0.5735.90", driver("chromedriver", "chrome-114"))
+                .write(file);
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(file.length() - 1);
+            raw.write('x');
+        }
+        DriverBundle bundle = DriverBundle.open(file);
+        File out = new File(root, "out");
+        try {
+            bundle.extract(bundle.find(DriverType.Chrome, Platform.Linux, Arch.X64, "114.0.5735.90"), out);
+            Assert.fail("expected the damaged driver to be rejected");
+        } catch (IntegrityCheckFailedException e) {
+            Assert.assertFalse(new File(out, "chromedriver").exists());
+        } finally {
+            bundle.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotABundle() throws IOException {
+        File file = new File(root, "drivers.awdb");
+        FileUtils.writeStringToFile(file, "not a bundle", StandardCharsets.UTF_8);
+        DriverBundle.open(file);
+    }
+
+    @Test
+    public void testNameOutsideDirectoryIsRejected() throws IOException {
+        assertRejected(patch(73, "../../evil.x".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testUnknownCodeIsRejected() throws IOException {
+        assertRejected(patch(0, new byte[]{7}));
+        assertRejected(patch(2, new byte[]{(byte) 0x99}));
+    }
+
+    @Test
+    public void testNameLengthIsChecked() throws IOException {
+        assertRejected(patch(72, new byte[]{(byte) 0xc8}));
+    }
+
+    @Test
+    public void testDataOutsideFileIsRejected() throws IOException {
+        assertRejected(patch(16, new byte[]{0x7f, 0, 0, 0, 0, 0, 0, 0}));
+        assertRejected(patch(24, new byte[]{0x7f, 0, 0, 0, 0, 0, 0, 0}));
+    }
+
+    /**
+     * Writes a bundle of one chromedriver and overwrites bytes of its index record.
+     */
+    private File patch(int offset, byte[] bytes) throws IOException {
+        File file = new File(root, "patched-" + System.nanoTime() + ".awdb");
+        new DriverBundle.Writer(false)
+                .add(DriverType.Chrome, Platform.Linux, Arch.X64, "114.0.5735.90", driver("chromedriver", "chrome-114"))
+                .write(file);
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(32 + offset);
+            raw.write(bytes);
+        }
+        return file;
+    }
+
+    private static void assertRejected(File file) {
+        try {
+            DriverBundle.open(file).close();
+            Assert.fail("expected the bundle to be rejected: " + file);
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("driver bundle"));
+        }
+    }
+
+    private File driver(String name, String content) throws IOException {
+        File driver = new File(root, "src" + File.separator + content + File.separator + name);
+        FileUtils.writeStringToFile(driver, content, StandardCharsets.UTF_8);
+        return driver;
+    }
+}
@@ -0,0 +1,220 @@
+package io.driver.manage;
+
+import io.driver.manage.enums.DriverType;
+import io.driver.utils.Config;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DriverRegistryTest {
+    private File root;
+    private StubDriver driver;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("driver-registry-test").toFile();
+        driver = new StubDriver();
+        DriverRegistry.invalidateAll();
+    }
+
+    @After
+    public void tearDown() {
+        DriverRegistry.invalidateAll();
+        Config.clearOverrides();
+        System.clearProperty(SetDriver.chrome);
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testMemoized() {
+        String path = DriverRegistry.resolve(DriverType.Chrome, () -> driver);
+        Assert.assertEquals(path, DriverRegistry.resolve(DriverType.Chrome, () -> driver));
+        Assert.assertEquals(1, driver.probes.get());
+        Assert.assertEquals(1, driver.configures.get());
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneResolution() throws Exception {
+        driver.delayMillis = 200;
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> DriverRegistry.resolve(DriverType.Chrome, () -> driver)));
+        }
+        for (CompletableFuture<String> future : futures) {
+            Assert.assertEquals(futures.get(0).get(), future.get());
+        }
+        Assert.assertEquals(1, driver.configures.get());
+    }
+
+    @Test
+    public void testBrowserUpdateResolvesNewDriver() {
+        Config.override("registry.browserTtlSeconds", "0");
+        String old = DriverRegistry.resolve(DriverType.Chrome, () -> driver);
+        driver.browserVersion = "115.0.5790.110";
+        String updated = DriverRegistry.resolve(DriverType.Chrome, () -> driver);
+        Assert.assertNotEquals(old, updated);
+        Assert.assertTrue(updated.contains("115.0.5790.110"));
+        Assert.assertEquals(2, driver.configures.get());
+    }
+
+    @Test
+    public void testBrowserVersionTrustedWithinTtl() {
+        DriverRegistry.resolve(DriverType.Chrome, () -> driver);
+        driver.browserVersion = "115.0.5790.110";
+        DriverRegistry.resolve(DriverType.Chrome, () -> driver);
+        Assert.assertEquals(1, driver.probes.get());
+    }
+
+    @Test
+    public void testDeletedDriverIsResolvedAgain() {
+        String path = DriverRegistry.resolve(DriverType.Chrome, () -> driver);
+        FileUtils.deleteQuietly(new File(path));
+        Assert.assertEquals(path, DriverRegistry.resolve(DriverType.Chrome, () -> driver));
+        Assert.assertEquals(2, driver.configures.get());
+    }
+
+    @Test
+    public void testFailureIsNotMemoized() {
+        driver.fail = true;
+        try {
+            DriverRegistry.resolve(DriverType.Chrome, () -> driver);
+            Assert.fail("expected the resolution to fail");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("configure failed", e.getMessage());
+        }
+        driver.fail = false;
+        Assert.assertTrue(new File(DriverRegistry.resolve(DriverType.Chrome, () -> driver)).isFile());
+    }
+
+    @Test
+    public void testRefreshWaitsForRunningResolution() throws Exception {
+        driver.delayMillis = 300;
+        CountDownLatch started = driver.started;
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> DriverRegistry.resolve(DriverType.Chrome, () -> driver));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        String refreshed = DriverRegistry.refresh(DriverType.Chrome, () -> driver);
+        Assert.assertEquals(running.get(), refreshed);
+        Assert.assertTrue(new File(refreshed).isFile());
+        Assert.assertEquals(1, driver.clears.get());
+        Assert.assertFalse(driver.overlapped);
+    }
+
+    @Test
+    public void testResolveDuringRefreshDoesNotDeadlock() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            DriverRegistry.invalidateAll();
+            StubDriver stub = new StubDriver();
+            stub.clearDelayMillis = 50;
+            CompletableFuture<String> refreshing = CompletableFuture.supplyAsync(() -> DriverRegistry.refresh(DriverType.Chrome, () -> stub));
+            Assert.assertTrue(stub.clearing.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> resolving = CompletableFuture.supplyAsync(() -> DriverRegistry.resolve(DriverType.Chrome, () -> stub));
+            String refreshed = refreshing.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(refreshed, resolving.get(10, TimeUnit.SECONDS));
+            Assert.assertTrue(new File(refreshed).isFile());
+            Assert.assertEquals(1, stub.configures.get());
+            Assert.assertFalse(stub.overlapped);
+        }
+    }
+
+    private class StubDriver extends AutoWebdriver {
+        private final AtomicInteger probes = new AtomicInteger();
+        private final AtomicInteger configures = new AtomicInteger();
+        private final AtomicInteger clears = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch clearing = new CountDownLatch(1);
+        private volatile String browserVersion = "114.0.5735.198";
+        private volatile long delayMillis;
+        private volatile long clearDelayMillis;
+        private volatile boolean fail;
+        private volatile boolean overlapped;
+
+        @Override
+        public void configure() {
+            enter();
+            try {
+                configures.incrementAndGet();
+                started.countDown();
+                sleep();
+                if (fail) {
+                    throw new IllegalStateException("configure failed");
+                }
+                File file = new File(root, browserVersion + File.separator + "chromedriver");
+                FileUtils.writeStringToFile(file, browserVersion, "UTF-8");
+                SetDriver.setChrome(file.getAbsolutePath());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+
+        @Override
+        public StubDriver clearCache() {
+            enter();
+            try {
+                clears.incrementAndGet();
+                clearing.countDown();
+                TimeUnit.MILLISECONDS.sleep(clearDelayMillis);
+                FileUtils.deleteQuietly(new File(root, browserVersion));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+            return this;
+        }
+
+        @Override
+        public String getLocalDriverVersion(DriverType type) {
+            probes.incrementAndGet();
+            return browserVersion;
+        }
+
+        @Override
+        protected String findBestMatchLocalVersion(DriverType type) {
+            return browserVersion;
+        }
+
+        @Override
+        protected String findDriverVersion(DriverType type, long browserMajor) {
+            return "";
+        }
+
+        @Override
+        protected String getDownloadUrl(String driverVersion) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected File downloadDriver(String driverVersion) {
+            throw new UnsupportedOperationException();
+        }
+
+        private void enter() {
+            if (active.incrementAndGet() > 1) {
+                overlapped = true;
+            }
+        }
+
+        private void sleep() {
+            try {
+                TimeUnit.MILLISECONDS.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.driver.manage;
+
+import io.driver.utils.Config;
+import io.driver.utils.ProcessExecutor;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class VersionProbeTest {
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("version-probe-test").toFile();
+        ProcessExecutor.clearCache();
+    }
+
+    @After
+    public void tearDown() {
+        Config.clearOverrides();
+        ProcessExecutor.clearCache();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testFileSource() throws IOException {
+        File ini = new File(root, "application.ini");
+        FileUtils.writeStringToFile(ini, "[App]\nName=Firefox\nVersion=115.0.2\nBuildID=1\n", StandardCharsets.UTF_8);
+        VersionProbe.Result result = VersionProbe.probe(Collections.singletonList("file|" + ini.getPath() + "|Version=([\\d.]+)"),
+                Collections.emptyList());
+        Assert.assertEquals("115.0.2", result.getVersion());
+        Assert.assertEquals(ini, result.getSource());
+    }
+
+    @Test
+    public void testDirectorySourceTakesHighestVersion() {
+        File application = new File(root, "Application");
+        for (String name : Arrays.asList("114.0.5735.90", "114.0.5735.199", "9.0.0.1", "SetupMetrics")) {
+            new File(application, name).mkdirs();
+        }
+        VersionProbe.Result result = VersionProbe.probe(Collections.singletonList("dir|" + application.getPath()), Collections.emptyList());
+        Assert.assertEquals("114.0.5735.199", result.getVersion());
+    }
+
+    @Test
+    public void testSourceCachedUntilFileChanges() throws IOException {
+        File ini = new File(root, "application.ini");
+        String source = "file|" + ini.getPath() + "|Version=([\\d.]+)";
+        FileUtils.writeStringToFile(ini, "Version=115.0.2\n", StandardCharsets.UTF_8);
+        Assert.assertEquals("115.0.2", VersionProbe.probe(Collections.singletonList(source), Collections.emptyList()).getVersion());
+        FileUtils.writeStringToFile(ini, "Version=116.0.13\n", StandardCharsets.UTF_8);
+        ini.setLastModified(ini.lastModified() + 2000);
+        Assert.assertEquals("116.0.13", VersionProbe.probe(Collections.singletonList(source), Collections.emptyList()).getVersion());
+    }
+
+    @Test
+    public void testFirstMatchingSourceWins() throws IOException {
+        File ini = new File(root, "application.ini");
+        FileUtils.writeStringToFile(ini, "Version=115.0.2\n", StandardCharsets.UTF_8);
+        VersionProbe.Result result = VersionProbe.probe(Arrays.asList("file|" + new File(root, "missing.ini").getPath() + "|Version=(.+)",
+                "file|" + ini.getPath() + "|Name=(.+)", "bogus", "file|" + ini.getPath() + "|Version=([\\d.]+)"), Collections.emptyList());
+        Assert.assertEquals("115.0.2", result.getVersion());
+    }
+
+    @Test
+    public void testCommandFallback() {
+        VersionProbe.Result result = VersionProbe.probe(Collections.singletonList("dir|" + new File(root, "missing").getPath()),
+                Arrays.asList("false", "echo Google Chrome 114.0.5735.90"));
+        Assert.assertEquals("114.0.5735.90", result.getVersion());
+        Assert.assertNull(result.getSource());
+    }
+
+    @Test
+    public void testNothingFound() {
+        Assert.assertNull(VersionProbe.probe(Collections.emptyList(), Collections.singletonList("echo no version here")));
+        Assert.assertNull(VersionProbe.probe(Collections.emptyList(), Collections.emptyList()));
+    }
+}
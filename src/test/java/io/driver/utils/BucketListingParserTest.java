@@ -0,0 +1,116 @@
+package io.driver.utils;
+
+import io.driver.fake.FakeDriverServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BucketListingParserTest {
+    private FakeDriverServer server;
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("bucket-listing-test").toFile();
+        server = new FakeDriverServer();
+        server.cache(new File(root, "cache"));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testFilterKeys() throws IOException {
+        String listing = "<?xml version='1.0' encoding='UTF-8'?><ListBucketResult xmlns='http://doc.s3.amazonaws.com/2006-03-01'>"
+                + "<Name>chromedriver</Name><Contents><Key>114.0.5735.90/chromedriver_linux64.zip</Key><Size>1</Size></Contents>"
+                + "<Contents><Key>114.0.5735.90/notes.txt</Key></Contents>"
+                + "<Contents><Key>115.0.5790.102/chromedriver_linux64.zip</Key></Contents></ListBucketResult>";
+        Assert.assertEquals(Arrays.asList("114.0.5735.90/chromedriver_linux64.zip", "115.0.5790.102/chromedriver_linux64.zip"),
+                BucketListingParser.list(stream(listing), "http://localhost/", "Key", i -> i.endsWith(".zip")));
+    }
+
+    @Test
+    public void testAzureNames() throws IOException {
+        String listing = "<?xml version=\"1.0\" encoding=\"utf-8\"?><EnumerationResults ContainerName=\"edgewebdriver\"><Blobs>"
+                + "<Blob><Name>114.0.1823.51/edgedriver_win64.zip</Name><Properties><Content-Length>1</Content-Length></Properties></Blob>"
+                + "</Blobs><NextMarker /></EnumerationResults>";
+        Assert.assertEquals(Arrays.asList("114.0.1823.51/edgedriver_win64.zip"),
+                BucketListingParser.list(stream(listing), "http://localhost/", "Name", i -> true));
+    }
+
+    @Test
+    public void testHandlerStopsReading() throws IOException {
+        List<String> seen = new ArrayList<>();
+        BucketListingParser.read(stream(page("b", "a", "b", "c")), server.getBaseUrl() + "/list", "Key", key -> {
+            seen.add(key);
+            return !"b".equals(key);
+        });
+        Assert.assertEquals(Arrays.asList("a", "b"), seen);
+        Assert.assertEquals(0, server.getRequests());
+    }
+
+    @Test
+    public void testFollowsContinuations() throws IOException {
+        server.file("/list?marker=b", bytes(truncated(null, "c", "d")));
+        server.file("/list?marker=d", bytes(page(null, "e")));
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d", "e"),
+                BucketListingParser.list(stream(page("b", "a", "b")), server.getBaseUrl() + "/list", "Key", i -> true));
+        Assert.assertEquals(2, server.getRequests());
+    }
+
+    @Test
+    public void testPageLimit() throws IOException {
+        Config.override("index.maxPages", "3");
+        server.file("/list?marker=a", bytes(page("a", "a")));
+        try {
+            BucketListingParser.list(stream(page("a", "a")), server.getBaseUrl() + "/list", "Key", i -> true);
+            Assert.fail("expected the page limit to be hit");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("index.maxPages"));
+        }
+        Assert.assertEquals(2, server.getRequests());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedListing() throws IOException {
+        BucketListingParser.list(stream("<ListBucketResult><Key>a</Ke"), "http://localhost/", "Key", i -> true);
+    }
+
+    private static String page(String nextMarker, String... keys) {
+        StringBuilder builder = new StringBuilder("<ListBucketResult>");
+        if (nextMarker != null) {
+            builder.append("<NextMarker>").append(nextMarker).append("</NextMarker>");
+        }
+        for (String key : keys) {
+            builder.append("<Contents><Key>").append(key).append("</Key></Contents>");
+        }
+        return builder.append("</ListBucketResult>").toString();
+    }
+
+    private static String truncated(String nextMarker, String... keys) {
+        return page(nextMarker, keys).replace("<ListBucketResult>", "<ListBucketResult><IsTruncated>true</IsTruncated>");
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(bytes(text));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
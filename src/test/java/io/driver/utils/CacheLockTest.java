@@ -0,0 +1,120 @@
+package io.driver.utils;
+
+import io.driver.exception.CacheLockException;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CacheLockTest {
+    private File root;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("cache-lock-test").toFile();
+        directory = new File(root, "chrome" + File.separator + "114.0.5735.90");
+    }
+
+    @After
+    public void tearDown() {
+        Config.clearOverrides();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testLockFileIsSibling() {
+        CacheLock lock = CacheLock.acquire(directory);
+        try {
+            Assert.assertTrue(new File(directory.getPath() + ".lock").isFile());
+            Assert.assertFalse(directory.exists());
+        } finally {
+            lock.close();
+        }
+    }
+
+    @Test
+    public void testHeldLockIsExclusive() throws Exception {
+        CacheLock lock = CacheLock.acquire(directory);
+        try {
+            Assert.assertFalse(tryAcquireElsewhere(directory));
+        } finally {
+            lock.close();
+        }
+        Assert.assertTrue(tryAcquireElsewhere(directory));
+    }
+
+    @Test
+    public void testOtherDirectoriesAreIndependent() throws Exception {
+        CacheLock lock = CacheLock.acquire(directory);
+        try {
+            Assert.assertTrue(tryAcquireElsewhere(new File(directory.getParentFile(), "115.0.5790.102")));
+        } finally {
+            lock.close();
+        }
+    }
+
+    @Test
+    public void testAcquireTimesOut() throws Exception {
+        Config.override("cache.lockTimeoutSeconds", "1");
+        CacheLock lock = CacheLock.acquire(directory);
+        try {
+            CompletableFuture<CacheLock> waiting = CompletableFuture.supplyAsync(() -> CacheLock.acquire(directory));
+            try {
+                waiting.get(5, TimeUnit.SECONDS);
+                Assert.fail("expected the lock to time out");
+            } catch (java.util.concurrent.ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof CacheLockException);
+            }
+        } finally {
+            lock.close();
+        }
+    }
+
+    @Test
+    public void testWaitersRunOneAtATime() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture.runAsync(() -> {
+                CacheLock lock = CacheLock.acquire(directory);
+                try {
+                    if (active.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    TimeUnit.MILLISECONDS.sleep(50);
+                    active.decrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    lock.close();
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, overlaps.get());
+    }
+
+    private static boolean tryAcquireElsewhere(File directory) throws Exception {
+        // the lock belongs to the thread that took it, so it is released on that thread too
+        return CompletableFuture.supplyAsync(() -> {
+            CacheLock lock = CacheLock.tryAcquire(directory);
+            if (lock == null) {
+                return false;
+            }
+            lock.close();
+            return true;
+        }).get();
+    }
+}
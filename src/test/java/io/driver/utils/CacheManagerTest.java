@@ -0,0 +1,183 @@
+package io.driver.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CacheManagerTest {
+    private static final long hour = TimeUnit.HOURS.toMillis(1);
+    private File root;
+    private long now;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("cache-manager-test").toFile();
+        Config.override("cache.dir", new File(root, "unused").getAbsolutePath());
+        Config.override("cache.maxEntries", "10");
+        Config.override("cache.maxSizeMB", "512");
+        Config.override("cache.maxAgeDays", "30");
+        now = System.currentTimeMillis();
+    }
+
+    @After
+    public void tearDown() {
+        Config.clearOverrides();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testMaxEntriesEvictsLeastRecentlyUsed() throws IOException {
+        Config.override("cache.maxEntries", "2");
+        version("chrome", "112.0.5615.49", 1024, 4);
+        version("chrome", "113.0.5672.63", 1024, 1);
+        version("chrome", "114.0.5735.90", 1024, 3);
+        version("chrome", "115.0.5790.102", 1024, 2);
+        CacheManager.compact(root);
+        assertVersions("chrome", "113.0.5672.63", "115.0.5790.102");
+    }
+
+    @Test
+    public void testIdleVersionsExpireButTheLastUsedIsKept() throws IOException {
+        Config.override("cache.maxAgeDays", "1");
+        version("edge", "113.0.1774.57", 1024, 24 * 9);
+        version("edge", "114.0.1823.51", 1024, 24 * 5);
+        version("firefox", "0.33.0", 1024, 2);
+        version("firefox", "0.32.2", 1024, 48);
+        CacheManager.compact(root);
+        assertVersions("edge", "114.0.1823.51");
+        assertVersions("firefox", "0.33.0");
+    }
+
+    @Test
+    public void testSizeBudgetEvictsOldestAcrossBrowsers() throws IOException {
+        Config.override("cache.maxSizeMB", "1");
+        version("chrome", "113.0.5672.63", 400 * 1024, 5);
+        version("chrome", "114.0.5735.90", 400 * 1024, 1);
+        version("edge", "113.0.1774.57", 400 * 1024, 4);
+        version("edge", "114.0.1823.51", 400 * 1024, 2);
+        CacheManager.compact(root);
+        assertVersions("chrome", "114.0.5735.90");
+        assertVersions("edge", "114.0.1823.51");
+    }
+
+    @Test
+    public void testSizeBudgetStopsOnceMet() throws IOException {
+        Config.override("cache.maxSizeMB", "1");
+        version("chrome", "112.0.5615.49", 300 * 1024, 6);
+        version("chrome", "113.0.5672.63", 300 * 1024, 5);
+        version("chrome", "114.0.5735.90", 300 * 1024, 1);
+        version("edge", "114.0.1823.51", 300 * 1024, 2);
+        CacheManager.compact(root);
+        assertVersions("chrome", "113.0.5672.63", "114.0.5735.90");
+        assertVersions("edge", "114.0.1823.51");
+    }
+
+    @Test
+    public void testLockedVersionIsNotEvicted() throws Exception {
+        Config.override("cache.maxEntries", "1");
+        File locked = version("chrome", "113.0.5672.63", 1024, 5);
+        version("chrome", "114.0.5735.90", 1024, 1);
+        CountDownLatch acquired = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            CacheLock lock = CacheLock.acquire(locked);
+            try {
+                acquired.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.close();
+            }
+        });
+        holder.start();
+        Assert.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        try {
+            CacheManager.compact(root);
+            assertVersions("chrome", "113.0.5672.63", "114.0.5735.90");
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+        CacheManager.compact(root);
+        assertVersions("chrome", "114.0.5735.90");
+        Assert.assertFalse(new File(locked.getPath() + ".lock").exists());
+    }
+
+    @Test
+    public void testCleanUpOfTemporaryFilesAndVerifiedArchives() throws IOException {
+        File versionDir = version("chrome", "114.0.5735.90", 1024, 1);
+        File staleTmp = file(new File(versionDir, "chromedriver.1.tmp"), 2);
+        File freshTmp = file(new File(versionDir, "chromedriver.2.tmp"), 0);
+        File staging = file(new File(root, "chrome" + File.separator + ".staging-1" + File.separator + "chromedriver"), 2).getParentFile();
+        staging.setLastModified(now - 2 * hour);
+        File archive = file(new File(versionDir, "chromedriver_linux64.zip"), 0);
+        file(new File(versionDir, ".verified.json"), 0);
+        CacheManager.compact(root);
+        Assert.assertFalse(staleTmp.exists());
+        Assert.assertTrue(freshTmp.exists());
+        Assert.assertFalse(staging.exists());
+        Assert.assertFalse(archive.exists());
+        Assert.assertTrue(new File(versionDir, "chromedriver").isFile());
+    }
+
+    @Test
+    public void testUnverifiedArchiveIsKept() throws IOException {
+        File versionDir = version("chrome", "114.0.5735.90", 1024, 1);
+        File archive = file(new File(versionDir, "chromedriver_linux64.zip"), 0);
+        CacheManager.compact(root);
+        Assert.assertTrue(archive.exists());
+    }
+
+    @Test
+    public void testTouch() throws IOException {
+        File versionDir = version("chrome", "114.0.5735.90", 1024, 48);
+        CacheManager.touch(new File(versionDir, "chromedriver"));
+        Assert.assertTrue(now - new File(versionDir, ".last-access").lastModified() < hour);
+    }
+
+    @Test
+    public void testTouchCompactsTheTouchedCache() throws Exception {
+        Config.override("cache.maxEntries", "1");
+        version("chrome", "113.0.5672.63", 1024, 5);
+        File versionDir = version("chrome", "114.0.5735.90", 1024, 1);
+        CacheManager.touch(new File(versionDir, "chromedriver"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (new File(root, "chrome" + File.separator + "113.0.5672.63").exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertVersions("chrome", "114.0.5735.90");
+        Assert.assertFalse(new File(root, "unused").exists());
+    }
+
+    private File version(String browser, String version, int bytes, long idleHours) throws IOException {
+        File versionDir = new File(root, browser + File.separator + version);
+        FileUtils.writeByteArrayToFile(new File(versionDir, "chromedriver"), new byte[bytes]);
+        File marker = new File(versionDir, ".last-access");
+        FileUtils.touch(marker);
+        Assert.assertTrue(marker.setLastModified(now - idleHours * hour));
+        return versionDir;
+    }
+
+    private File file(File file, long ageHours) throws IOException {
+        FileUtils.writeByteArrayToFile(file, new byte[16]);
+        Assert.assertTrue(file.setLastModified(now - ageHours * hour));
+        return file;
+    }
+
+    private void assertVersions(String browser, String... versions) {
+        String[] names = new File(root, browser).list((dir, name) -> Version.isVersion(name));
+        Assert.assertNotNull(names);
+        Arrays.sort(names);
+        Assert.assertArrayEquals(versions, names);
+    }
+}
@@ -0,0 +1,158 @@
+package io.driver.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+public class ConfigTest {
+    private File root;
+    private File userFile;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("config-test").toFile();
+        userFile = new File(root, "autowebdriver.properties");
+        System.setProperty("autowebdriver.config", userFile.getAbsolutePath());
+        Config.reload();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("autowebdriver.config");
+        System.clearProperty("autowebdriver.cache.maxEntries");
+        Config.clearOverrides();
+        Config.reload();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testBundledDefaults() {
+        Assert.assertEquals("3", Config.getString("cache.maxEntries"));
+        Assert.assertEquals(3, Config.getInt("cache.maxEntries"));
+        Assert.assertFalse(Config.getBoolean("store.enabled"));
+        Assert.assertEquals("", Config.getString("cache.dir"));
+    }
+
+    @Test
+    public void testUserFileOverridesBundled() throws IOException {
+        writeUserFile("cache.maxEntries=5", "user.only=yes");
+        Config.reload();
+        Assert.assertEquals(5, Config.getInt("cache.maxEntries"));
+        Assert.assertEquals("yes", Config.getString("user.only"));
+        Assert.assertEquals(512, Config.getInt("cache.maxSizeMB"));
+    }
+
+    @Test
+    public void testSystemPropertyOverridesUserFile() throws IOException {
+        writeUserFile("cache.maxEntries=5");
+        System.setProperty("autowebdriver.cache.maxEntries", "7");
+        Config.reload();
+        Assert.assertEquals(7, Config.getInt("cache.maxEntries"));
+    }
+
+    @Test
+    public void testOverrideWinsUntilCleared() {
+        System.setProperty("autowebdriver.cache.maxEntries", "7");
+        Config.override("cache.maxEntries", "9");
+        Assert.assertEquals(9, Config.getInt("cache.maxEntries"));
+        Config.clearOverrides();
+        Assert.assertEquals(7, Config.getInt("cache.maxEntries"));
+    }
+
+    @Test
+    public void testEnvironmentLayer() throws Exception {
+        writeUserFile("cache.maxEntries=5", "cache.maxSizeMB=100");
+        Map<String, String> values = readInChildJvm("AUTOWEBDRIVER_CACHE_MAXENTRIES", "8",
+                "-Dautowebdriver.cache.maxSizeMB=200", "cache.maxEntries", "cache.maxSizeMB");
+        // the environment beats the user file, a system property beats the environment
+        Assert.assertEquals("8", values.get("cache.maxEntries"));
+        Assert.assertEquals("200", values.get("cache.maxSizeMB"));
+
+        values = readInChildJvm("AUTOWEBDRIVER_CACHE_MAXSIZEMB", "300",
+                "-Dautowebdriver.cache.maxSizeMB=200", "cache.maxSizeMB");
+        Assert.assertEquals("200", values.get("cache.maxSizeMB"));
+    }
+
+    @Test
+    public void testTypedGetters() {
+        Config.override("prefetch.browsers", "chrome, firefox,,edge");
+        Assert.assertEquals(Arrays.asList("chrome", "firefox", "", "edge"), Config.getList("prefetch.browsers"));
+        Assert.assertEquals(Arrays.asList("chrome", "firefox", "", "edge"), Arrays.asList(Config.getStringArray("prefetch.browsers")));
+        Assert.assertTrue(Config.getList("missing.key").isEmpty());
+        Assert.assertEquals("fallback", Config.getString("missing.key", "fallback"));
+        Assert.assertEquals(42, Config.getInt("missing.key", 42));
+        Assert.assertTrue(Config.getBoolean("missing.key", true));
+        Config.override("metrics.jfr", "true");
+        Assert.assertTrue(Config.getBoolean("metrics.jfr", false));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testRequiredMissing() {
+        Config.getInt("missing.key");
+    }
+
+    @Test
+    public void testGenerationAndHash() {
+        long generation = Config.getGeneration();
+        int hash = Config.hash();
+        Config.override("cache.maxEntries", "4");
+        Assert.assertTrue(Config.getGeneration() > generation);
+        Assert.assertNotEquals(hash, Config.hash());
+        Config.clearOverrides();
+        Assert.assertEquals(hash, Config.hash());
+    }
+
+    private void writeUserFile(String... lines) throws IOException {
+        FileUtils.writeLines(userFile, StandardCharsets.UTF_8.name(), Arrays.asList(lines));
+    }
+
+    /**
+     * Environment variables cannot be set for the running JVM, so the layer is read in a child JVM.
+     */
+    private Map<String, String> readInChildJvm(String variable, String value, String property, String... keys) throws Exception {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                "-Dautowebdriver.config=" + userFile.getAbsolutePath(), property, Print.class.getName()));
+        command.addAll(Arrays.asList(keys));
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.environment().put(variable, value);
+        Process process = builder.start();
+        String output = IOUtils.toString(process.getInputStream(), StandardCharsets.UTF_8);
+        Assert.assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        Map<String, String> values = new HashMap<>();
+        for (String line : output.split("\\r?\\n")) {
+            if (line.startsWith(Print.prefix)) {
+                String[] pair = line.substring(Print.prefix.length()).split("=", 2);
+                values.put(pair[0], pair[1]);
+            }
+        }
+        Assert.assertEquals(output, keys.length, values.size());
+        return values;
+    }
+
+    public static class Print {
+        private static final String prefix = "config-test:";
+
+        public static void main(String[] args) {
+            for (String key : args) {
+                System.out.println(prefix + key + "=" + Config.getString(key));
+            }
+        }
+    }
+}
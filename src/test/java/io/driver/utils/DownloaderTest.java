@@ -0,0 +1,115 @@
+package io.driver.utils;
+
+import com.google.common.io.BaseEncoding;
+import io.driver.exception.DownloadFailedException;
+import io.driver.fake.FakeDriverServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+public class DownloaderTest {
+    private static final int size = 512 * 1024;
+    private FakeDriverServer server;
+    private File root;
+    private File destination;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("downloader-test").toFile();
+        server = new FakeDriverServer();
+        server.cache(new File(root, "cache"));
+        Config.override("download.minSegmentSize", String.valueOf(64 * 1024));
+        Config.override("download.threads", "4");
+        destination = new File(root, "driver.zip");
+        url = server.getBaseUrl() + "/files/driver.zip";
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testSegmentedDownload() throws IOException {
+        byte[] content = content(1);
+        server.file("/files/driver.zip", content);
+        Downloader.download(url, destination);
+        Assert.assertArrayEquals(content, FileUtils.readFileToByteArray(destination));
+        Assert.assertEquals(4, server.getRanges().size());
+        Assert.assertFalse(new File(destination.getPath() + ".part").exists());
+        Assert.assertFalse(new File(destination.getPath() + ".part.state").exists());
+    }
+
+    @Test
+    public void testResumeFromSavedState() throws IOException {
+        byte[] content = content(1);
+        server.file("/files/driver.zip", content);
+        writePart(content, size / 2, etag(content));
+        Downloader.download(url, destination);
+        Assert.assertArrayEquals(content, FileUtils.readFileToByteArray(destination));
+        Assert.assertEquals(Arrays.asList("bytes=" + size / 2 + "-" + (size - 1)), server.getRanges());
+    }
+
+    @Test
+    public void testStateOfAnotherVersionIsDiscarded() throws IOException {
+        byte[] content = content(1);
+        server.file("/files/driver.zip", content);
+        writePart(content(2), size / 2, etag(content(2)));
+        Downloader.download(url, destination);
+        Assert.assertArrayEquals(content, FileUtils.readFileToByteArray(destination));
+        Assert.assertTrue(server.getRanges().contains("bytes=0-" + (size / 4 - 1)));
+    }
+
+    @Test
+    public void testRestartWhenChangedDuringDownload() throws IOException {
+        server.file("/files/driver.zip", content(1)).replaceAfterHead("/files/driver.zip", content(2));
+        Downloader.download(url, destination);
+        Assert.assertArrayEquals(content(2), FileUtils.readFileToByteArray(destination));
+    }
+
+    @Test
+    public void testChecksumMismatch() {
+        server.file("/files/driver.zip", content(1));
+        try {
+            Downloader.download(url, destination, "00");
+            Assert.fail("expected a checksum mismatch");
+        } catch (DownloadFailedException e) {
+            Assert.assertTrue(e.getMessage().contains("checksum mismatch"));
+        }
+        Assert.assertFalse(destination.exists());
+    }
+
+    private void writePart(byte[] content, int done, String etag) throws IOException {
+        byte[] part = new byte[size];
+        System.arraycopy(content, 0, part, 0, done);
+        FileUtils.writeByteArrayToFile(new File(destination.getPath() + ".part"), part);
+        FileUtils.writeStringToFile(new File(destination.getPath() + ".part.state"),
+                size + " " + etag + "\n0 " + (size - 1) + " " + done + "\n", StandardCharsets.UTF_8);
+    }
+
+    private static byte[] content(int seed) {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+
+    private static String etag(byte[] content) {
+        try {
+            return "\"" + BaseEncoding.base16().lowerCase().encode(MessageDigest.getInstance("MD5").digest(content)) + "\"";
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package io.driver.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+public class DriverStoreTest {
+    private static final String KEY = "chrome/linux-64/114.0.5735.90";
+    private File root;
+    private File store;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("driver-store-test").toFile();
+        store = new File(root, "store");
+        Config.override("store.enabled", "true");
+        Config.override("store.dir", store.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        Config.clearOverrides();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        Config.clearOverrides();
+        Config.override("store.dir", store.getAbsolutePath());
+        Assert.assertFalse(DriverStore.isEnabled());
+        Assert.assertFalse(DriverStore.materialize(KEY, new File(root, "cache")).exists());
+    }
+
+    @Test
+    public void testPublishWritesBlobAndRef() throws IOException {
+        File driver = driver(new File(root, "a"), "driver-a");
+        DriverStore.publish(KEY, driver, Downloader.sha256(driver));
+        File ref = new File(store, "refs" + File.separator + KEY.replace('/', File.separatorChar));
+        Assert.assertTrue(ref.isFile());
+        Collection<File> blobs = FileUtils.listFiles(new File(store, "sha256"), null, true);
+        Assert.assertEquals(1, blobs.size());
+        Assert.assertEquals(Downloader.sha256(driver), blobs.iterator().next().getName());
+        Assert.assertTrue(Files.isSameFile(driver.toPath(), blobs.iterator().next().toPath()));
+    }
+
+    @Test
+    public void testMaterializeLinksTheBlob() throws IOException {
+        File driver = driver(new File(root, "a"), "driver-a");
+        DriverStore.publish(KEY, driver, Downloader.sha256(driver));
+        File materialized = DriverStore.materialize(KEY, new File(root, "b"));
+        Assert.assertTrue(materialized.isFile());
+        Assert.assertEquals("chromedriver", materialized.getName());
+        Assert.assertFalse(Files.isSymbolicLink(materialized.toPath()));
+        Assert.assertTrue(Files.isSameFile(driver.toPath(), materialized.toPath()));
+        Assert.assertEquals("driver-a", FileUtils.readFileToString(materialized, StandardCharsets.UTF_8));
+        Assert.assertTrue(Integrity.isTrusted(materialized));
+    }
+
+    @Test
+    public void testUnverifiedDriverIsNotPublished() throws IOException {
+        File driver = driver(new File(root, "a"), "driver-a");
+        Integrity.recordUnverified(driver, Downloader.sha256(driver));
+        DriverStore.publish(KEY, driver, Downloader.sha256(driver));
+        Assert.assertFalse(DriverStore.materialize(KEY, new File(root, "b")).exists());
+    }
+
+    @Test
+    public void testMaterializeUnknownKey() {
+        Assert.assertFalse(DriverStore.materialize(KEY, new File(root, "b")).exists());
+    }
+
+    @Test
+    public void testPublishReplacesLocalCopyWithLink() throws IOException {
+        File first = driver(new File(root, "a"), "driver-a");
+        File second = driver(new File(root, "b"), "driver-a");
+        DriverStore.publish(KEY, first, Downloader.sha256(first));
+        DriverStore.publish(KEY, second, Downloader.sha256(second));
+        Assert.assertTrue(Files.isSameFile(first.toPath(), second.toPath()));
+    }
+
+    @Test
+    public void testCollectKeepsLinkedBlob() throws IOException {
+        File driver = driver(new File(root, "a"), "driver-a");
+        DriverStore.publish(KEY, driver, Downloader.sha256(driver));
+        age(KEY);
+        DriverStore.collect();
+        Assert.assertEquals(1, FileUtils.listFiles(new File(store, "sha256"), null, true).size());
+        Assert.assertTrue(DriverStore.materialize(KEY, new File(root, "b")).isFile());
+    }
+
+    @Test
+    public void testCollectRemovesUnusedBlob() throws IOException {
+        File driver = driver(new File(root, "a"), "driver-a");
+        DriverStore.publish(KEY, driver, Downloader.sha256(driver));
+        FileUtils.deleteQuietly(driver.getParentFile());
+        String fresh = "chrome/linux-64/115.0.5790.102";
+        File other = driver(new File(root, "c"), "driver-c");
+        DriverStore.publish(fresh, other, Downloader.sha256(other));
+        FileUtils.deleteQuietly(other.getParentFile());
+        age(KEY);
+        DriverStore.collect();
+        Assert.assertFalse(DriverStore.materialize(KEY, new File(root, "b")).exists());
+        Assert.assertTrue(DriverStore.materialize(fresh, new File(root, "d")).isFile());
+        Assert.assertEquals(1, FileUtils.listFiles(new File(store, "sha256"), null, true).size());
+    }
+
+    private void age(String key) {
+        File ref = new File(store, "refs" + File.separator + key.replace('/', File.separatorChar));
+        Assert.assertTrue(ref.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31)));
+    }
+
+    private static File driver(File directory, String content) throws IOException {
+        File driver = new File(directory, "chromedriver");
+        FileUtils.writeStringToFile(driver, content, StandardCharsets.UTF_8);
+        Integrity.record(driver, Downloader.sha256(driver));
+        return driver;
+    }
+}
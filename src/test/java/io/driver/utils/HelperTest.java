@@ -0,0 +1,60 @@
+package io.driver.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class HelperTest {
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("helper-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testListFilesSkipsHiddenEntries() throws IOException {
+        File versionDir = new File(root, "114.0.5735.90");
+        FileUtils.writeStringToFile(new File(versionDir, "chromedriver"), "driver", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(versionDir, ".verified.json"), "{}", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(versionDir, ".extract-1/chromedriver"), "partial", StandardCharsets.UTF_8);
+        List<String> names = Helper.listFiles(versionDir.getPath()).stream()
+                .map(i -> versionDir.toPath().relativize(i.toPath()).toString())
+                .collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("chromedriver"), names);
+    }
+
+    @Test
+    public void testUnzipStagesOutsideTheDestination() throws IOException {
+        File versionDir = new File(root, "chrome" + File.separator + "114.0.5735.90");
+        File archive = new File(versionDir, "chromedriver_linux64.zip");
+        versionDir.mkdirs();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("chromedriver"));
+            zip.write("driver".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        Helper.unzip(archive, versionDir.getPath());
+        Assert.assertEquals("driver", FileUtils.readFileToString(new File(versionDir, "chromedriver"), StandardCharsets.UTF_8));
+        Assert.assertEquals(Arrays.asList("114.0.5735.90"), Arrays.asList(versionDir.getParentFile().list()));
+        Assert.assertEquals(2, versionDir.list().length);
+    }
+}
@@ -0,0 +1,177 @@
+package io.driver.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+public class HttpTransportTest {
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+    private final List<String> encodings = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private ExecutorService handlers;
+    private String base;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        handlers.shutdownNow();
+        Config.clearOverrides();
+    }
+
+    @Test
+    public void testGzipIsRequestedAndDecoded() throws IOException {
+        try (HttpTransport.Response response = HttpTransport.get(base + "/gzip", "index")) {
+            Assert.assertEquals(200, response.getCode());
+            Assert.assertEquals("listing", IOUtils.toString(response.getBody(), StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals("gzip", encodings.get(0));
+    }
+
+    @Test
+    public void testCallerHeadersAreSent() throws IOException {
+        try (HttpTransport.Response response = HttpTransport.get(base + "/etag", "index", Collections.singletonMap("If-None-Match", "\"v1\""))) {
+            Assert.assertEquals(304, response.getCode());
+        }
+        try (HttpTransport.Response response = HttpTransport.get(base + "/etag", "index")) {
+            Assert.assertEquals(200, response.getCode());
+            Assert.assertEquals("\"v1\"", response.getHeader("ETag"));
+        }
+    }
+
+    @Test
+    public void testErrorBodyIsReadable() throws IOException {
+        try (HttpTransport.Response response = HttpTransport.get(base + "/missing", "download")) {
+            Assert.assertEquals(404, response.getCode());
+            Assert.assertEquals("not found", IOUtils.toString(response.getBody(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testConnectionIsReusedAfterUnreadBody() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            try (HttpTransport.Response response = HttpTransport.get(base + "/plain", "download")) {
+                Assert.assertEquals(200, response.getCode());
+            }
+        }
+        try (HttpTransport.Response response = HttpTransport.head(base + "/plain", "mirror")) {
+            Assert.assertEquals(200, response.getCode());
+        }
+        Assert.assertEquals(4, clientPorts.size());
+        Assert.assertEquals(1, clientPorts.stream().distinct().count());
+    }
+
+    @Test
+    public void testTotalTimeoutOfProfile() throws IOException {
+        Config.override("download.totalTimeout", "300");
+        long start = System.currentTimeMillis();
+        try (HttpTransport.Response response = HttpTransport.get(base + "/slow", "download")) {
+            IOUtils.toByteArray(response.getBody());
+            Assert.fail("expected the request to be aborted");
+        } catch (SocketTimeoutException e) {
+            Assert.assertTrue(System.currentTimeMillis() - start < 3000);
+        }
+        try (HttpTransport.Response response = HttpTransport.get(base + "/plain", "index")) {
+            Assert.assertEquals(200, response.getCode());
+        }
+    }
+
+    @Test
+    public void testTruncatedBodyFails() throws IOException {
+        try (HttpTransport.Response response = HttpTransport.get(base + "/truncated", "download")) {
+            IOUtils.toByteArray(response.getBody());
+            Assert.fail("expected the short body to fail");
+        } catch (EOFException e) {
+            Assert.assertTrue(e.getMessage().contains("160 of 1024"));
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        encodings.add(String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")));
+        try {
+            switch (exchange.getRequestURI().getPath()) {
+                case "/gzip":
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                        gzip.write("listing".getBytes(StandardCharsets.UTF_8));
+                    }
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                    send(exchange, 200, compressed.toByteArray());
+                    return;
+                case "/etag":
+                    exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                    if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        exchange.sendResponseHeaders(304, -1);
+                        return;
+                    }
+                    send(exchange, 200, "v1".getBytes(StandardCharsets.UTF_8));
+                    return;
+                case "/plain":
+                    send(exchange, 200, new byte[16 * 1024]);
+                    return;
+                case "/slow":
+                    // trickles the whole declared body over 13 s, only the total timeout can end the read early
+                    exchange.sendResponseHeaders(200, 1024);
+                    OutputStream out = exchange.getResponseBody();
+                    for (int i = 0; i < 1024 / 8; i++) {
+                        out.write(new byte[8]);
+                        out.flush();
+                        TimeUnit.MILLISECONDS.sleep(100);
+                    }
+                    return;
+                case "/truncated":
+                    exchange.sendResponseHeaders(200, 1024);
+                    exchange.getResponseBody().write(new byte[160]);
+                    exchange.getResponseBody().flush();
+                    return;
+                default:
+                    send(exchange, 404, "not found".getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the client aborted the exchange
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(code, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
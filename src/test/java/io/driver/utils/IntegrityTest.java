@@ -0,0 +1,126 @@
+package io.driver.utils;
+
+import io.driver.exception.IntegrityCheckFailedException;
+import io.driver.fake.FakeDriverServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class IntegrityTest {
+    private File root;
+    private File driver;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("integrity-test").toFile();
+        driver = new File(root, "114.0.5735.90" + File.separator + "chromedriver");
+        FileUtils.writeStringToFile(driver, "chromedriver 114", StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() {
+        Config.clearOverrides();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testUnknownFileIsNotTrusted() {
+        Assert.assertFalse(Integrity.isTrusted(driver));
+        Assert.assertNull(Integrity.recordedSha256(driver));
+        Assert.assertFalse(Integrity.isTrusted(driver));
+    }
+
+    @Test
+    public void testRecordedFileIsTrusted() throws IOException {
+        String sha256 = Downloader.sha256(driver);
+        Integrity.record(driver, sha256);
+        Assert.assertTrue(Integrity.isTrusted(driver));
+        Assert.assertEquals(sha256, Integrity.recordedSha256(driver));
+        Assert.assertTrue(new File(driver.getParentFile(), ".verified.json").isFile());
+    }
+
+    @Test
+    public void testTouchedFileIsHashedAgain() throws IOException {
+        Integrity.record(driver, Downloader.sha256(driver));
+        Assert.assertTrue(driver.setLastModified(driver.lastModified() - 60000));
+        Metrics.reset();
+        Assert.assertTrue(Integrity.isTrusted(driver));
+        Assert.assertEquals(1, Metrics.snapshot().get(Metrics.Phase.VERIFY).getCount());
+        Metrics.reset();
+        Assert.assertTrue(Integrity.isTrusted(driver));
+        Assert.assertEquals(0, Metrics.snapshot().get(Metrics.Phase.VERIFY).getCount());
+    }
+
+    @Test
+    public void testModifiedFileIsNotTrusted() throws IOException {
+        Integrity.record(driver, Downloader.sha256(driver));
+        FileUtils.writeStringToFile(driver, "tampered", StandardCharsets.UTF_8);
+        Assert.assertFalse(Integrity.isTrusted(driver));
+    }
+
+    @Test
+    public void testTargetIsKeptWhenHashedAgain() throws IOException {
+        Integrity.record(driver, Downloader.sha256(driver));
+        Assert.assertFalse(Integrity.isTarget(driver, "mac-arm64"));
+        Integrity.recordTarget(driver, "mac-arm64");
+        Assert.assertTrue(Integrity.isTarget(driver, "mac-arm64"));
+        Assert.assertFalse(Integrity.isTarget(driver, "mac-64"));
+        Assert.assertTrue(driver.setLastModified(driver.lastModified() - 60000));
+        Assert.assertTrue(Integrity.isTrusted(driver));
+        Assert.assertTrue(Integrity.isTarget(driver, "mac-arm64"));
+    }
+
+    @Test
+    public void testFilesOfADirectoryAreRecordedSeparately() throws IOException {
+        File other = new File(driver.getParentFile(), "LICENSE.chromedriver");
+        FileUtils.writeStringToFile(other, "license", StandardCharsets.UTF_8);
+        Integrity.record(driver, Downloader.sha256(driver));
+        Assert.assertTrue(Integrity.isTrusted(driver));
+        Assert.assertFalse(Integrity.isTrusted(other));
+    }
+
+    @Test
+    public void testUnverifiedFileIsTrustedOnlyWhenDigestsAreOptional() throws IOException {
+        Integrity.recordUnverified(driver, Downloader.sha256(driver));
+        Assert.assertFalse(Integrity.isVerified(driver));
+        Assert.assertTrue(Integrity.isTrusted(driver));
+        Assert.assertTrue(driver.setLastModified(driver.lastModified() - 60000));
+        Assert.assertTrue(Integrity.isTrusted(driver));
+        Assert.assertFalse(Integrity.isVerified(driver));
+        Config.override("integrity.requireDigest", "true");
+        Assert.assertFalse(Integrity.isTrusted(driver));
+    }
+
+    @Test
+    public void testVerifyArchive() throws IOException {
+        try (FakeDriverServer server = new FakeDriverServer();
+             HttpTransport.Response response = HttpTransport.get(server.getBaseUrl() + "/chromedriver/114.0.5735.90/chromedriver_linux64.zip", "download")) {
+            Assert.assertEquals(200, response.getCode());
+            byte[] archive = IOUtils.toByteArray(response.getBody());
+            byte[] sha256 = Integrity.sha256().digest(archive);
+            byte[] md5 = Integrity.md5().digest(archive);
+            String url = "chromedriver_linux64.zip";
+            Assert.assertTrue(Integrity.verifyArchive(url, response, sha256, md5, Integrity.hex(sha256)));
+            Assert.assertTrue(Integrity.verifyArchive(url, response, sha256, md5, null));
+            assertFails(() -> Integrity.verifyArchive(url, response, sha256, md5, Integrity.hex(md5)), "sha256 mismatch");
+            assertFails(() -> Integrity.verifyArchive(url, response, sha256, sha256, null), "md5 mismatch");
+        }
+    }
+
+    private static void assertFails(Runnable check, String message) {
+        try {
+            check.run();
+            Assert.fail("expected: " + message);
+        } catch (IntegrityCheckFailedException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
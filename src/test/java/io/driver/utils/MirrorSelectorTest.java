@@ -0,0 +1,95 @@
+package io.driver.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class MirrorSelectorTest {
+    private static final String a = "https://a.example/chromedriver/";
+    private static final String b = "https://b.example/chromedriver/";
+    private static final String c = "https://c.example/chromedriver/";
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("mirror-selector-test").toFile();
+        Config.override("cache.dir", root.getAbsolutePath());
+        Config.override("mirror.flushSeconds", "3600");
+        MirrorSelector.reset();
+    }
+
+    @After
+    public void tearDown() {
+        MirrorSelector.reset();
+        Config.clearOverrides();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testRankByLatency() {
+        MirrorSelector.recordSuccess(a, 200);
+        MirrorSelector.recordSuccess(b, 50);
+        Assert.assertEquals(Arrays.asList(b, a, c), MirrorSelector.rank(Arrays.asList(a, b, c)));
+    }
+
+    @Test
+    public void testRankKeepsOrderOfUnknownMirrors() {
+        Assert.assertEquals(Arrays.asList(c, a, b), MirrorSelector.rank(Arrays.asList(c, a, null, "", b, a)));
+    }
+
+    @Test
+    public void testErrorsArePenalized() {
+        MirrorSelector.recordSuccess(a, 100);
+        MirrorSelector.recordFailure(a);
+        MirrorSelector.recordSuccess(a, 100);
+        MirrorSelector.recordSuccess(b, 300);
+        Assert.assertEquals(Arrays.asList(b, a), MirrorSelector.rank(Arrays.asList(a, b)));
+    }
+
+    @Test
+    public void testCooldownAfterConsecutiveFailures() {
+        MirrorSelector.recordSuccess(a, 10);
+        for (int i = 0; i < 3; i++) {
+            MirrorSelector.recordFailure(a);
+        }
+        MirrorSelector.recordSuccess(b, 900);
+        Assert.assertEquals(Arrays.asList(b, a), MirrorSelector.rank(Arrays.asList(a, b)));
+        MirrorSelector.recordSuccess(a, 10);
+        Assert.assertEquals(a, MirrorSelector.rank(Arrays.asList(a, b)).get(0));
+    }
+
+    @Test
+    public void testScoresAreFlushedNotWrittenPerRequest() {
+        File scores = new File(root, "mirror-scores.json");
+        MirrorSelector.recordSuccess(a, 100);
+        MirrorSelector.recordFailure(b);
+        Assert.assertFalse(scores.exists());
+        MirrorSelector.flush();
+        Assert.assertTrue(scores.isFile());
+    }
+
+    @Test
+    public void testFlushMergesWithScoresOfOtherProcesses() throws IOException {
+        File scores = new File(root, "mirror-scores.json");
+        long later = System.currentTimeMillis() + 60000;
+        FileUtils.writeStringToFile(scores, "{\"a.example\":{\"latency\":5.0,\"errorRate\":0.0,\"consecutiveFailures\":0,\"lastSuccess\":" + later
+                + ",\"lastFailure\":0},\"c.example\":{\"latency\":1.0,\"errorRate\":0.0,\"consecutiveFailures\":0,\"lastSuccess\":1,\"lastFailure\":0}}",
+                StandardCharsets.UTF_8);
+        MirrorSelector.recordSuccess(a, 500);
+        MirrorSelector.recordSuccess(b, 50);
+        MirrorSelector.flush();
+        String written = FileUtils.readFileToString(scores, StandardCharsets.UTF_8);
+        Assert.assertTrue(written.contains("\"a.example\":{\"latency\":5.0"));
+        Assert.assertTrue(written.contains("b.example"));
+        Assert.assertTrue(written.contains("c.example"));
+        Assert.assertEquals(Arrays.asList(c, a, b), MirrorSelector.rank(Arrays.asList(a, b, c)));
+    }
+}
@@ -0,0 +1,147 @@
+package io.driver.utils;
+
+import io.driver.exception.ExecuteRuntimeCommandErrorException;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ProcessExecutorTest {
+    private File root;
+    private File counter;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeFalse(System.getProperty("os.name").toLowerCase().startsWith("windows"));
+        root = Files.createTempDirectory("process-executor-test").toFile();
+        counter = new File(root, "runs");
+    }
+
+    @After
+    public void tearDown() {
+        ProcessExecutor.clearCache();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testStdoutAndExitCode() {
+        ProcessExecutor.Result result = ProcessExecutor.run("echo 114.0.5735.90", 10000);
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertEquals(0, result.getExitCode());
+        Assert.assertEquals("114.0.5735.90", result.getStdout().trim());
+        Assert.assertEquals("", result.getStderr());
+
+        result = ProcessExecutor.run("false", 10000);
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertFalse(result.isTimedOut());
+        Assert.assertEquals(1, result.getExitCode());
+    }
+
+    @Test
+    public void testTimeoutKillsTheChild() {
+        long start = System.currentTimeMillis();
+        ProcessExecutor.Result result = ProcessExecutor.run("sleep 5", 300);
+        Assert.assertTrue(result.isTimedOut());
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertTrue(System.currentTimeMillis() - start < 3000);
+    }
+
+    @Test
+    public void testChattyStderrDoesNotBlock() throws IOException {
+        // about 240 KB on stderr, several times a pipe buffer, before anything on stdout
+        String command = script("i=0; while [ $i -lt 3000 ]; do "
+                + "echo xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx >&2; "
+                + "i=$((i+1)); done; echo done");
+        ProcessExecutor.Result result = ProcessExecutor.run(command, 10000);
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertEquals("done", result.getStdout().trim());
+        Assert.assertEquals(Config.getInt("process.outputLimit", 65536), result.getStderr().length());
+    }
+
+    @Test
+    public void testSuccessIsCached() throws IOException {
+        String command = script("echo run >> " + counter.getAbsolutePath() + "; echo 115.0.5790.102");
+        Assert.assertEquals("115.0.5790.102", ProcessExecutor.execute(command, 10000).getStdout().trim());
+        Assert.assertEquals("115.0.5790.102", ProcessExecutor.execute(command, 10000).getStdout().trim());
+        Assert.assertEquals(1, runs());
+
+        ProcessExecutor.run(command, 10000);
+        Assert.assertEquals(2, runs());
+        ProcessExecutor.clearCache();
+        ProcessExecutor.execute(command, 10000);
+        Assert.assertEquals(3, runs());
+    }
+
+    @Test
+    public void testFailureIsNotCached() throws IOException {
+        String command = script("echo run >> " + counter.getAbsolutePath() + "; exit 2");
+        Assert.assertEquals(2, ProcessExecutor.execute(command, 10000).getExitCode());
+        Assert.assertEquals(2, ProcessExecutor.execute(command, 10000).getExitCode());
+        Assert.assertEquals(2, runs());
+    }
+
+    @Test
+    public void testConcurrentCallsShareOneChild() throws Exception {
+        String command = script("echo run >> " + counter.getAbsolutePath() + "; sleep 1; echo 114.0.1823.51");
+        CountDownLatch ready = new CountDownLatch(1);
+        List<CompletableFuture<ProcessExecutor.Result>> calls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            calls.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ProcessExecutor.execute(command, 10000);
+            }));
+        }
+        ready.countDown();
+        for (CompletableFuture<ProcessExecutor.Result> call : calls) {
+            Assert.assertEquals("114.0.1823.51", call.get(15, TimeUnit.SECONDS).getStdout().trim());
+        }
+        Assert.assertEquals(1, runs());
+    }
+
+    @Test
+    public void testCancelAllKillsRunningChildren() throws Exception {
+        long start = System.currentTimeMillis();
+        CompletableFuture<ProcessExecutor.Result> call = CompletableFuture.supplyAsync(() -> ProcessExecutor.run("sleep 10", 20000));
+        while (!call.isDone() && System.currentTimeMillis() - start < 5000) {
+            ProcessExecutor.cancelAll();
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        ProcessExecutor.Result result = call.get(1, TimeUnit.SECONDS);
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertTrue(System.currentTimeMillis() - start < 6000);
+    }
+
+    @Test(expected = ExecuteRuntimeCommandErrorException.class)
+    public void testEmptyCommand() {
+        ProcessExecutor.run("   ", 1000);
+    }
+
+    /**
+     * Commands are split on whitespace without quoting, so anything with a shell construct goes into a script.
+     */
+    private String script(String body) throws IOException {
+        File script = new File(root, "script-" + System.nanoTime() + ".sh");
+        FileUtils.writeStringToFile(script, body + "\n", StandardCharsets.UTF_8);
+        return "sh " + script.getAbsolutePath();
+    }
+
+    private int runs() throws IOException {
+        return counter.isFile() ? FileUtils.readLines(counter, StandardCharsets.UTF_8).size() : 0;
+    }
+}
@@ -0,0 +1,116 @@
+package io.driver.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class VersionCatalogTest {
+    private static final List<String> listing = Arrays.asList(
+            "113.0.5672.63", "114.0.5735.16", "114.0.5735.90", "114.0.5735.199", "115.0.5790.13", "115.0.5790.102", "notes", "");
+
+    @Test
+    public void testExactMatch() {
+        Assert.assertEquals("114.0.5735.90", VersionCatalog.of(listing).bestMatch("114.0.5735.90"));
+        Assert.assertEquals("114.0.5735.90", VersionCatalog.bestMatch(listing, Version.parse("114.0.5735.90")));
+    }
+
+    @Test
+    public void testHighestWhenComponentIsNotListed() {
+        Assert.assertEquals("114.0.5735.199", VersionCatalog.of(listing).bestMatch("114.0.5735.133"));
+        Assert.assertEquals("115.0.5790.102", VersionCatalog.of(listing).bestMatch("115.0.5800.1"));
+        Assert.assertEquals("114.0.5735.199", VersionCatalog.of(listing).bestMatch("114.1.0.0"));
+    }
+
+    @Test
+    public void testEqualComponentIsPreferredOverHigher() {
+        List<String> versions = Arrays.asList("114.0.5800.1", "114.0.5735.3", "114.1.5000.1");
+        Assert.assertEquals("114.0.5735.3", VersionCatalog.of(versions).bestMatch("114.0.5735.90"));
+    }
+
+    @Test
+    public void testUnlistedMajor() {
+        Assert.assertEquals("", VersionCatalog.of(listing).bestMatch("116.0.5845.96"));
+        Assert.assertEquals("", VersionCatalog.bestMatch(listing, Version.parse("116.0.5845.96")));
+        Assert.assertEquals("", VersionCatalog.of(Collections.emptyList()).bestMatch("114.0.5735.90"));
+    }
+
+    @Test
+    public void testTiesGoToTheVersionListedFirst() {
+        List<String> versions = Arrays.asList("114.0.5735.090", "114.0.5735.90", "114.00.5735.90");
+        Assert.assertEquals("114.0.5735.090", VersionCatalog.of(versions).bestMatch("114.0.5735.90"));
+        Assert.assertEquals("114.0.5735.090", VersionCatalog.bestMatch(versions, Version.parse("114.0.5735.90")));
+        List<String> reversed = new ArrayList<>(versions);
+        Collections.reverse(reversed);
+        Assert.assertEquals("114.00.5735.90", VersionCatalog.of(reversed).bestMatch("114.0.5735.90"));
+        Assert.assertEquals("114.00.5735.90", VersionCatalog.bestMatch(reversed, Version.parse("114.0.5735.90")));
+    }
+
+    @Test
+    public void testShorterBrowserVersion() {
+        Assert.assertEquals("114.0.5735.16", VersionCatalog.of(listing).bestMatch("114"));
+        Assert.assertEquals("114.0.5735.16", VersionCatalog.bestMatch(listing, Version.parse("114")));
+    }
+
+    @Test
+    public void testNewest() {
+        VersionCatalog catalog = VersionCatalog.of(listing);
+        Assert.assertEquals(6, catalog.size());
+        Assert.assertEquals("114.0.5735.199", catalog.newest(114));
+        Assert.assertEquals("", catalog.newest(116));
+    }
+
+    /**
+     * Both the catalog and the single pass of {@link Helper#findBestMatchVersion(String, List)} must agree with the
+     * implementation they replaced, on listings dense enough to hit every tie-break.
+     */
+    @Test
+    public void testEquivalentToLegacyMatch() {
+        Random random = new Random(20000);
+        for (int round = 0; round < 20000; round++) {
+            List<String> versions = new ArrayList<>();
+            int size = 1 + random.nextInt(60);
+            for (int i = 0; i < size; i++) {
+                versions.add(randomVersion(random));
+            }
+            String browser = random.nextInt(4) == 0 ? versions.get(random.nextInt(size)) : randomVersion(random);
+            String expected = legacyFindBestMatchVersion(browser, versions);
+            Assert.assertEquals(browser + " in " + versions, expected, Helper.findBestMatchVersion(browser, versions));
+            Assert.assertEquals(browser + " in " + versions, expected, VersionCatalog.of(versions).bestMatch(browser));
+        }
+    }
+
+    private static String randomVersion(Random random) {
+        return (112 + random.nextInt(4)) + "." + random.nextInt(2) + "." + (5700 + random.nextInt(6)) + "." + random.nextInt(8);
+    }
+
+    private static String legacyFindBestMatchVersion(String currentVersion, List<String> versionList) {
+        List<String> mainVersions = versionList.stream().filter(i -> i.split("\\.")[0].equals(currentVersion.split("\\.")[0])).collect(Collectors.toList());
+        if (mainVersions.isEmpty()) {
+            return "";
+        }
+        List<Long> subList = Arrays.stream(currentVersion.split("\\.")).map(Long::parseLong).collect(Collectors.toList());
+        for (int i = 0; i < subList.size(); i++) {
+            long mainIndex = subList.get(i);
+            List<String> equals = new ArrayList<>();
+            List<String> others = new ArrayList<>();
+            for (String s : versionList) {
+                long versionIndex = Long.parseLong(s.split("\\.")[i]);
+                if (versionIndex == mainIndex) {
+                    equals.add(s);
+                } else {
+                    others.add(s);
+                }
+            }
+            if (!equals.isEmpty()) {
+                versionList = equals;
+            } else {
+                int va = i;
+                Long max = others.stream().map(m -> Long.parseLong(m.split("\\.")[va])).max(Comparator.naturalOrder()).orElseThrow(NoSuchElementException::new);
+                versionList = others.stream().filter(b -> Long.valueOf(Long.parseLong(b.split("\\.")[va])).equals(max)).collect(Collectors.toList());
+            }
+        }
+        return versionList.isEmpty() ? "" : versionList.get(0);
+    }
+}
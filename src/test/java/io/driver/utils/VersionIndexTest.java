@@ -0,0 +1,104 @@
+package io.driver.utils;
+
+import com.google.gson.reflect.TypeToken;
+import io.driver.fake.FakeDriverServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VersionIndexTest {
+    private static final Type listType = new TypeToken<List<String>>() {
+    }.getType();
+    private final AtomicInteger parses = new AtomicInteger();
+    private final VersionIndex.Parser<List<String>> parser = (in, url) -> {
+        parses.incrementAndGet();
+        String text = IOUtils.toString(in, StandardCharsets.UTF_8);
+        return text.isEmpty() ? Collections.emptyList() : Arrays.asList(text.split(","));
+    };
+    private FakeDriverServer server;
+    private File root;
+    private File index;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("version-index-test").toFile();
+        server = new FakeDriverServer();
+        server.cache(new File(root, "cache"));
+        server.file("/listing", bytes("1.0,2.0"));
+        index = new File(root, "listing.index.json");
+        url = server.getBaseUrl() + "/listing";
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testFreshIndexSkipsNetwork() throws IOException {
+        Assert.assertEquals(Arrays.asList("1.0", "2.0"), VersionIndex.load(index, url, listType, parser));
+        server.resetRequests();
+        Assert.assertEquals(Arrays.asList("1.0", "2.0"), VersionIndex.load(index, url, listType, parser));
+        Assert.assertEquals(0, server.getRequests());
+        Assert.assertEquals(1, parses.get());
+    }
+
+    @Test
+    public void testStaleIndexRevalidatedWithEtag() throws IOException {
+        Config.override("index.ttlMinutes", "0");
+        VersionIndex.load(index, url, listType, parser);
+        server.resetRequests();
+        Assert.assertEquals(Arrays.asList("1.0", "2.0"), VersionIndex.load(index, url, listType, parser));
+        Assert.assertEquals(1, server.getRequests());
+        Assert.assertEquals(1, parses.get());
+    }
+
+    @Test
+    public void testChangedListingIsParsedAgain() throws IOException {
+        Config.override("index.ttlMinutes", "0");
+        VersionIndex.load(index, url, listType, parser);
+        server.file("/listing", bytes("1.0,2.0,3.0"));
+        Assert.assertEquals(Arrays.asList("1.0", "2.0", "3.0"), VersionIndex.load(index, url, listType, parser));
+        Assert.assertEquals(2, parses.get());
+    }
+
+    @Test
+    public void testStaleIndexUsedWhenServerFails() throws IOException {
+        Config.override("index.ttlMinutes", "0");
+        VersionIndex.load(index, url, listType, parser);
+        server.failNext(1, 503);
+        Assert.assertEquals(Arrays.asList("1.0", "2.0"), VersionIndex.load(index, url, listType, parser));
+    }
+
+    @Test
+    public void testEmptyListingIsNotCached() throws IOException {
+        server.file("/listing", bytes(""));
+        Assert.assertTrue(VersionIndex.load(index, url, listType, parser).isEmpty());
+        Assert.assertFalse(index.exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void testFailureWithoutIndex() throws IOException {
+        server.failNext(1, 503);
+        VersionIndex.load(index, url, listType, parser);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
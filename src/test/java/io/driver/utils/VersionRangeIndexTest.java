@@ -0,0 +1,136 @@
+package io.driver.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class VersionRangeIndexTest {
+
+    @Test
+    public void testNewestDriverOfRange() {
+        VersionRangeIndex index = VersionRangeIndex.of(mapping(
+                "0.17.0", 52, 62,
+                "0.18.0", 53, 62,
+                "0.26.0", 60, 90,
+                "0.30.0", 78, Integer.MAX_VALUE,
+                "0.33.0", 114, Integer.MAX_VALUE));
+        Assert.assertEquals(52, index.lowest());
+        Assert.assertEquals("", index.newestFor(51));
+        Assert.assertEquals("0.17.0", index.newestFor(52));
+        Assert.assertEquals("0.18.0", index.newestFor(53));
+        Assert.assertEquals("0.26.0", index.newestFor(62));
+        Assert.assertEquals("0.26.0", index.newestFor(77));
+        Assert.assertEquals("0.30.0", index.newestFor(78));
+        Assert.assertEquals("0.30.0", index.newestFor(113));
+        Assert.assertEquals("0.33.0", index.newestFor(114));
+        Assert.assertEquals("0.33.0", index.newestFor(Integer.MAX_VALUE));
+        Assert.assertEquals("", index.newestFor(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testGapBetweenRanges() {
+        VersionRangeIndex index = VersionRangeIndex.of(mapping("0.10.0", 40, 45, "0.20.0", 50, 60));
+        Assert.assertEquals("0.10.0", index.newestFor(45));
+        Assert.assertEquals("", index.newestFor(46));
+        Assert.assertEquals("", index.newestFor(49));
+        Assert.assertEquals("0.20.0", index.newestFor(50));
+        Assert.assertEquals("0.20.0", index.newestFor(60));
+        Assert.assertEquals("", index.newestFor(61));
+    }
+
+    @Test
+    public void testVersionsCompareNumerically() {
+        VersionRangeIndex index = VersionRangeIndex.of(mapping("0.9.0", 50, 60, "0.10.0", 50, 60));
+        Assert.assertEquals("0.10.0", index.newestFor(55));
+    }
+
+    @Test
+    public void testMalformedEntriesAreSkipped() {
+        Map<String, List<Integer>> mapping = mapping("0.20.0", 50, 60);
+        mapping.put("latest", Arrays.asList(1, 200));
+        mapping.put("0.21.0", Collections.singletonList(50));
+        mapping.put("0.22.0", null);
+        VersionRangeIndex index = VersionRangeIndex.of(mapping);
+        Assert.assertEquals(50, index.lowest());
+        Assert.assertEquals("0.20.0", index.newestFor(55));
+        Assert.assertEquals(mapping, index.toMap());
+    }
+
+    @Test
+    public void testEmpty() {
+        VersionRangeIndex index = VersionRangeIndex.of(Collections.emptyMap());
+        Assert.assertTrue(index.isEmpty());
+        Assert.assertEquals("", index.newestFor(114));
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        VersionRangeIndex index = VersionRangeIndex.read(json("{\"0.33.0\": [114, 2147483647], \"0.32.2\": [102, 2147483647]}"));
+        Assert.assertEquals("0.32.2", index.newestFor(113));
+        Assert.assertEquals("0.33.0", index.newestFor(115));
+        Assert.assertTrue(VersionRangeIndex.read(json("")).isEmpty());
+        try {
+            VersionRangeIndex.read(json("{\"0.33.0\": \"114\"}"));
+            Assert.fail("expected an unreadable mapping to be rejected");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("unable to read version mapping"));
+        }
+    }
+
+    @Test
+    public void testBundledMapping() throws IOException {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("geckodriver_mapping.json")) {
+            VersionRangeIndex index = VersionRangeIndex.read(in);
+            Assert.assertEquals(52, index.lowest());
+            Assert.assertFalse("".equals(index.newestFor(115)));
+        }
+    }
+
+    /**
+     * The precomputed intervals must give what a scan over every range gives.
+     */
+    @Test
+    public void testEquivalentToScan() {
+        Random random = new Random(14);
+        for (int round = 0; round < 2000; round++) {
+            Map<String, List<Integer>> mapping = new HashMap<>();
+            for (int i = 0, size = 1 + random.nextInt(12); i < size; i++) {
+                int min = 50 + random.nextInt(60);
+                int max = random.nextInt(5) == 0 ? Integer.MAX_VALUE : min + random.nextInt(20);
+                mapping.put("0." + random.nextInt(40) + "." + random.nextInt(3), Arrays.asList(min, max));
+            }
+            VersionRangeIndex index = VersionRangeIndex.of(mapping);
+            for (int major = 45; major < 135; major++) {
+                Assert.assertEquals(mapping + " at " + major, scan(mapping, major), index.newestFor(major));
+            }
+        }
+    }
+
+    private static String scan(Map<String, List<Integer>> mapping, int major) {
+        Version best = null;
+        for (Map.Entry<String, List<Integer>> entry : mapping.entrySet()) {
+            Version version = Version.parse(entry.getKey());
+            if (major >= entry.getValue().get(0) && major <= entry.getValue().get(1) && (best == null || version.compareTo(best) > 0)) {
+                best = version;
+            }
+        }
+        return best == null ? "" : best.toString();
+    }
+
+    private static Map<String, List<Integer>> mapping(Object... entries) {
+        Map<String, List<Integer>> mapping = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 3) {
+            mapping.put((String) entries[i], Arrays.asList((Integer) entries[i + 1], (Integer) entries[i + 2]));
+        }
+        return mapping;
+    }
+
+    private static InputStream json(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
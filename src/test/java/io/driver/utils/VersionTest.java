@@ -0,0 +1,73 @@
+package io.driver.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class VersionTest {
+
+    @Test
+    public void testParse() {
+        Version version = Version.parse("114.0.5735.90");
+        Assert.assertEquals(4, version.length());
+        Assert.assertEquals(114, version.major());
+        Assert.assertEquals(5735, version.get(2));
+        Assert.assertEquals(-1, version.get(4));
+        Assert.assertEquals("114.0.5735.90", version.toString());
+        Assert.assertEquals(7, Version.parse("7").major());
+    }
+
+    @Test
+    public void testInvalid() {
+        for (String text : Arrays.asList("", ".", "1.", ".1", "1..2", "1.2a", "v1.2", "1,2", " 1.2")) {
+            Assert.assertFalse(text, Version.isVersion(text));
+            try {
+                Version.parse(text);
+                Assert.fail("expected " + text + " to be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testOrdering() {
+        List<String> sorted = Arrays.asList("9.1", "114", "114.0", "114.0.5735.9", "114.0.5735.90", "114.0.5735.199", "115.0.1");
+        List<String> shuffled = Arrays.asList("114.0.5735.199", "115.0.1", "114", "9.1", "114.0.5735.90", "114.0", "114.0.5735.9");
+        Assert.assertEquals(sorted, shuffled.stream().map(Version::parse).sorted().map(Version::toString).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testEquality() {
+        Assert.assertEquals(Version.parse("114.0.0"), Version.parse("114.00.0"));
+        Assert.assertEquals(Version.parse("114.0.0").hashCode(), Version.parse("114.00.0").hashCode());
+        Assert.assertNotEquals(Version.parse("114.0"), Version.parse("114.0.0"));
+        Assert.assertEquals(0, Version.parse("114.0.0").compareTo(Version.parse("114.00.0")));
+    }
+
+    @Test
+    public void testParseMajor() {
+        Assert.assertEquals(116, Version.parseMajor("116.0b8"));
+        Assert.assertEquals(52, Version.parseMajor("52"));
+        try {
+            Version.parseMajor("b8");
+            Assert.fail("expected a missing major version to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParseInto() {
+        long[] components = new long[3];
+        Assert.assertTrue(Version.parseInto("114.0.5735.90", components));
+        Assert.assertArrayEquals(new long[]{114, 0, 5735}, components);
+        Assert.assertTrue(Version.parseInto("114", components));
+        Assert.assertArrayEquals(new long[]{114, -1, -1}, components);
+        Assert.assertFalse(Version.parseInto("114.x", components));
+        Assert.assertFalse(Version.parseInto("114.", components));
+    }
+}